@@ -0,0 +1,34 @@
+package com.sjm.core.nio.core;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+
+/**
+ * 编码器的公共部分：写出前的回调和刷出结束时OP_WRITE的取消
+ *
+ * {@link ChannelEncoder}把报文逐个编码到writeBuffer，{@link GatheringEncoder}把报文聚集成ByteBuffer数组写出
+ */
+public abstract class AbstractEncoder implements ChannelHandler {
+
+    protected int beforeWrite(ChannelContext ctx) throws IOException {
+        return 1;
+    }
+
+    /**
+     * 队列已写完时取消OP_WRITE，若期间有新的报文入队则继续刷出
+     * 
+     * @return true表示本次刷出结束
+     */
+    protected boolean finishFlush(ChannelContext ctx) {
+        ctx.removeInterestOps(SelectionKey.OP_WRITE);
+        ctx.flushScheduled.set(false);
+        ctx.flushCount++;
+        if (ctx.writeQueue.isEmpty() || !ctx.flushScheduled.compareAndSet(false, true)) {
+            ctx.detachWriteBuffer();
+            return true;
+        }
+        ctx.flushStartTime = NIOBase.now();
+        ctx.addInterestOps(SelectionKey.OP_WRITE);
+        return false;
+    }
+}
@@ -1,27 +1,335 @@
 package com.sjm.core.nio.core;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.sjm.core.logger.Logger;
+import com.sjm.core.logger.LoggerFactory;
+
+/**
+ * 直接内存池：按2的幂划分规格，每个线程有少量本地缓存，之后才访问共享队列；
+ * 分配的直接内存总量不超过maxMemory。
+ *
+ * 线程结束后其本地缓存中的缓冲区由trim()移回共享队列，新线程第一次使用池和分配达到上限时会自动调用。
+ *
+ * 开启泄漏检测后，记录每个缓冲区的申请位置和持有者，持有者被回收而缓冲区未归还时输出日志并回收缓冲区；
+ * 此时申请必须指定持有者，不能使用apply()和apply(int)。
+ */
 public class ByteBufferPool {
+    static final Logger logger = LoggerFactory.getLogger(ByteBufferPool.class);
+
+    private static final int MIN_SHIFT = 6;// 最小规格64字节
+    private static final int MAX_SHIFT = 30;// 最大规格1G
+    private static final int THREAD_CACHE_SIZE = 8;
+
+    static class SizeClass {
+        public int size;
+        public Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        public AtomicInteger count = new AtomicInteger();
+
+        public SizeClass(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * 线程本地缓存，每种规格一个栈
+     */
+    static class ThreadCache {
+        public WeakReference<Thread> thread;
+        public ByteBuffer[][] stacks = new ByteBuffer[MAX_SHIFT - MIN_SHIFT + 1][];
+        public int[] sizes = new int[MAX_SHIFT - MIN_SHIFT + 1];
+
+        public ThreadCache(Thread thread) {
+            this.thread = new WeakReference<>(thread);
+        }
+
+        public boolean isAlive() {
+            Thread t = thread.get();
+            return t != null && t.isAlive();
+        }
+
+        public ByteBuffer poll(int index) {
+            int n = sizes[index];
+            if (n == 0)
+                return null;
+            ByteBuffer[] stack = stacks[index];
+            ByteBuffer buffer = stack[--n];
+            stack[n] = null;
+            sizes[index] = n;
+            return buffer;
+        }
+
+        public boolean offer(int index, ByteBuffer buffer) {
+            ByteBuffer[] stack = stacks[index];
+            if (stack == null)
+                stacks[index] = stack = new ByteBuffer[THREAD_CACHE_SIZE];
+            int n = sizes[index];
+            if (n == stack.length)
+                return false;
+            stack[n] = buffer;
+            sizes[index] = n + 1;
+            return true;
+        }
+    }
+
+    static class LeakRecord extends WeakReference<Object> {
+        public ByteBuffer buffer;
+        public Throwable trace;
+
+        public LeakRecord(Object owner, ByteBuffer buffer, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.buffer = buffer;
+            this.trace = new Throwable("ByteBuffer[" + buffer.capacity() + "] applied here");
+        }
+    }
+
     private int bufferSize;
-    private Queue<ByteBuffer> buffers;
+    private long maxMemory;
+    private int maxPooledPerClass;
+    private SizeClass[] classes = new SizeClass[MAX_SHIFT - MIN_SHIFT + 1];
+    private AtomicLong allocatedMemory = new AtomicLong();
+    private ThreadLocal<ThreadCache> threadCaches;
+    private Queue<ThreadCache> allThreadCaches = new ConcurrentLinkedQueue<>();
+    private boolean lazyAttach;
+    private Map<ByteBuffer, LeakRecord> leakRecords;
+    private ReferenceQueue<Object> leakQueue;
 
-    public ByteBufferPool(int bufferSize) {
+    /**
+     * @param bufferSize apply()默认申请的大小
+     * @param maxMemory 最多分配的直接内存字节数
+     * @param maxPooledPerClass 每种规格在共享队列中最多保留的缓冲区个数，多余的交给GC释放
+     */
+    public ByteBufferPool(int bufferSize, long maxMemory, int maxPooledPerClass) {
         this.bufferSize = bufferSize;
-        this.buffers = new ConcurrentLinkedQueue<>();
+        this.maxMemory = maxMemory;
+        this.maxPooledPerClass = maxPooledPerClass;
+        for (int i = 0; i < classes.length; i++)
+            classes[i] = new SizeClass(1 << (i + MIN_SHIFT));
+        this.threadCaches = ThreadLocal.withInitial(this::newThreadCache);
+    }
+
+    public ByteBufferPool(int bufferSize, long maxMemory) {
+        this(bufferSize, maxMemory, Integer.MAX_VALUE);
+    }
+
+    public ByteBufferPool(int bufferSize) {
+        this(bufferSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * 连接空闲时不占用读写缓存，只在读写期间向池中申请
+     */
+    public ByteBufferPool setLazyAttach(boolean lazyAttach) {
+        this.lazyAttach = lazyAttach;
+        return this;
+    }
+
+    public boolean isLazyAttach() {
+        return lazyAttach;
+    }
+
+    public ByteBufferPool setLeakDetection(boolean leakDetection) {
+        if (leakDetection) {
+            leakRecords = Collections.synchronizedMap(new IdentityHashMap<>());
+            leakQueue = new ReferenceQueue<>();
+        } else {
+            leakRecords = null;
+            leakQueue = null;
+        }
+        return this;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public long getAllocatedMemory() {
+        return allocatedMemory.get();
     }
 
+    /**
+     * 不指定持有者，开启泄漏检测时不可用
+     */
     public ByteBuffer apply() {
-        ByteBuffer buffer = buffers.poll();
-        if (buffer == null)
-            buffer = ByteBuffer.allocateDirect(bufferSize);
+        return apply(bufferSize, null);
+    }
+
+    /**
+     * 不指定持有者，开启泄漏检测时不可用
+     */
+    public ByteBuffer apply(int size) {
+        return apply(size, null);
+    }
+
+    /**
+     * @param size 申请的字节数，实际容量向上取整到2的幂
+     * @param owner 缓冲区持有者，用于泄漏检测，开启泄漏检测时不能为null（缓冲区本身被记录引用，不能作为持有者）
+     */
+    public ByteBuffer apply(int size, Object owner) {
+        int index = indexOf(size);
+        if (index < 0)
+            throw new IllegalArgumentException("size=" + size);
+        Map<ByteBuffer, LeakRecord> records = leakRecords;
+        if (records != null) {
+            if (owner == null)
+                throw new IllegalArgumentException("owner is required when leak detection is on");
+            checkLeaks(records);
+        }
+        ByteBuffer buffer = threadCaches.get().poll(index);
+        if (buffer == null) {
+            SizeClass sc = classes[index];
+            buffer = pollShared(sc);
+            if (buffer == null)
+                buffer = allocate(sc);
+        }
+        if (records != null)
+            records.put(buffer, new LeakRecord(owner, buffer, leakQueue));
         return buffer;
     }
 
     public void recycle(ByteBuffer buffer) {
+        if (buffer == null)
+            return;
+        Map<ByteBuffer, LeakRecord> records = leakRecords;
+        if (records != null && records.remove(buffer) == null) {
+            logger.warn("ByteBuffer[" + buffer.capacity() + "] recycled twice or not from this pool",
+                    new Throwable());
+            return;
+        }
+        release(buffer);
+    }
+
+    private void release(ByteBuffer buffer) {
+        int index = indexOf(buffer.capacity());
+        if (index < 0 || classes[index].size != buffer.capacity() || !buffer.isDirect())
+            return;
         buffer.clear();
-        buffers.offer(buffer);
+        if (!threadCaches.get().offer(index, buffer))
+            releaseShared(index, buffer);
+    }
+
+    private void releaseShared(int index, ByteBuffer buffer) {
+        SizeClass sc = classes[index];
+        if (sc.count.incrementAndGet() <= maxPooledPerClass) {
+            sc.buffers.offer(buffer);
+        } else {
+            sc.count.decrementAndGet();
+            allocatedMemory.addAndGet(-buffer.capacity());
+        }
+    }
+
+    private ByteBuffer pollShared(SizeClass sc) {
+        ByteBuffer buffer = sc.buffers.poll();
+        if (buffer != null)
+            sc.count.decrementAndGet();
+        return buffer;
+    }
+
+    private ThreadCache newThreadCache() {
+        trim();
+        ThreadCache cache = new ThreadCache(Thread.currentThread());
+        allThreadCaches.offer(cache);
+        return cache;
+    }
+
+    /**
+     * 把已结束线程的本地缓存移回共享队列
+     */
+    public void trim() {
+        for (Iterator<ThreadCache> it = allThreadCaches.iterator(); it.hasNext();) {
+            ThreadCache cache = it.next();
+            if (!cache.isAlive()) {
+                it.remove();
+                flush(cache);
+            }
+        }
+    }
+
+    /**
+     * 把当前线程的本地缓存移回共享队列，不再使用池的线程结束前可以调用
+     */
+    public void flushThreadCache() {
+        ThreadCache cache = threadCaches.get();
+        threadCaches.remove();
+        allThreadCaches.remove(cache);
+        flush(cache);
+    }
+
+    private void flush(ThreadCache cache) {
+        for (int i = 0; i < classes.length; i++) {
+            ByteBuffer buffer;
+            while ((buffer = cache.poll(i)) != null)
+                releaseShared(i, buffer);
+        }
+    }
+
+    /**
+     * 返回当前未归还的缓冲区的申请位置，仅在开启泄漏检测时有效
+     */
+    public List<Throwable> getOutstandingTraces() {
+        List<Throwable> traces = new ArrayList<>();
+        Map<ByteBuffer, LeakRecord> records = leakRecords;
+        if (records != null)
+            synchronized (records) {
+                for (LeakRecord record : records.values())
+                    traces.add(record.trace);
+            }
+        return traces;
+    }
+
+    private void checkLeaks(Map<ByteBuffer, LeakRecord> records) {
+        LeakRecord record;
+        while ((record = (LeakRecord) leakQueue.poll()) != null) {
+            if (records.remove(record.buffer, record)) {
+                logger.error("ByteBuffer leaked: owner was released without recycling it",
+                        record.trace);
+                release(record.buffer);
+            }
+        }
+    }
+
+    /**
+     * 达到上限时先回收已结束线程的本地缓存再试一次
+     */
+    private ByteBuffer allocate(SizeClass sc) {
+        if (reserve(sc.size))
+            return ByteBuffer.allocateDirect(sc.size);
+        trim();
+        ByteBuffer buffer = pollShared(sc);
+        if (buffer != null)
+            return buffer;
+        if (reserve(sc.size))
+            return ByteBuffer.allocateDirect(sc.size);
+        throw new IllegalStateException("Direct memory limit exceeded: allocated="
+                + allocatedMemory.get() + " apply=" + sc.size + " max=" + maxMemory);
+    }
+
+    private boolean reserve(int size) {
+        while (true) {
+            long allocated = allocatedMemory.get();
+            if (allocated + size > maxMemory)
+                return false;
+            if (allocatedMemory.compareAndSet(allocated, allocated + size))
+                return true;
+        }
+    }
+
+    private static int indexOf(int size) {
+        if (size <= 0 || size > (1 << MAX_SHIFT))
+            return -1;
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
     }
 }
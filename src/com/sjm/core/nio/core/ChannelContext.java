@@ -3,6 +3,7 @@ package com.sjm.core.nio.core;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
@@ -10,6 +11,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.sjm.core.util.core.IOUtil;
 
@@ -29,6 +33,23 @@ public class ChannelContext implements Closeable {
     public Queue<Object> writeQueue;// 消息输入队列
     public ByteBuffer writeBuffer;// 写入缓存
     public Object encodeCotext;// 编码上下文
+    public AtomicBoolean flushScheduled = new AtomicBoolean();// 已注册OP_WRITE，等待刷出
+    public volatile long flushStartTime;// 最近一次flushScheduled置为true的时间
+    public AtomicInteger pendingWrites = new AtomicInteger();// 队列中等待写出的报文数
+
+    public AtomicLong writeMessages = new AtomicLong();// 写入的报文数
+    public long flushCount;// 刷出次数，每次从注册OP_WRITE到写完队列计一次
+    public long writeCalls;// write系统调用次数
+    public long writeBytes;// 写出的字节数
+
+    public ChannelTransport transport;// 传输层，为null时直接读写channel
+
+    public long lastReadTime;// 最后一次读的时间（毫秒，单调时钟）
+    public long lastWriteTime;// 最后一次写的时间
+    public TimerWheel.Timeout readIdleTimeout, writeIdleTimeout, allIdleTimeout;
+
+    public ChannelInbox inbox;// 业务线程收件箱，未配置业务线程池时为null
+    public volatile boolean readSuspended;// 收件箱已满，暂停读取
 
     public ChannelContext(SocketChannel channel, Selector selector, SelectionKey key,
             ChannelHandler encoder, ChannelHandler decoder, ByteBufferPool bufferPool,
@@ -40,28 +61,152 @@ public class ChannelContext implements Closeable {
         this.decoder = decoder;
         this.bufferPool = bufferPool;
         this.processer = processer;
-        this.readBuffer = bufferPool.apply();
-        this.writeBuffer = bufferPool.apply();
         this.writeQueue = new ConcurrentLinkedQueue<>();
-        writeBuffer.position(writeBuffer.limit());
+        if (!bufferPool.isLazyAttach()) {
+            attachReadBuffer();
+            attachWriteBuffer();
+        }
+    }
+
+    public ByteBuffer attachReadBuffer() {
+        if (readBuffer == null)
+            readBuffer = bufferPool.apply(bufferPool.getBufferSize(), this);
+        return readBuffer;
+    }
+
+    /**
+     * 读缓存为空时归还给池，仅在池开启lazyAttach时生效
+     */
+    public void detachReadBuffer() {
+        if (bufferPool.isLazyAttach() && readBuffer != null && readBuffer.position() == 0) {
+            bufferPool.recycle(readBuffer);
+            readBuffer = null;
+        }
+    }
+
+    public ByteBuffer attachWriteBuffer() {
+        if (writeBuffer == null) {
+            writeBuffer = bufferPool.apply(bufferPool.getBufferSize(), this);
+            writeBuffer.position(writeBuffer.limit());
+        }
+        return writeBuffer;
+    }
+
+    /**
+     * 写缓存已全部写出时归还给池，仅在池开启lazyAttach时生效
+     */
+    public void detachWriteBuffer() {
+        if (bufferPool.isLazyAttach() && writeBuffer != null && !writeBuffer.hasRemaining()) {
+            bufferPool.recycle(writeBuffer);
+            writeBuffer = null;
+        }
     }
 
     public void write(Object obj) throws IOException {
         writeQueue.offer(obj);
-        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
-        selector.wakeup();
+        pendingWrites.incrementAndGet();
+        writeMessages.incrementAndGet();
+        if (flushScheduled.compareAndSet(false, true)) {
+            flushStartTime = NIOBase.now();
+            addInterestOps(SelectionKey.OP_WRITE);
+            if (!inSelectorThread())
+                selector.wakeup();
+        }
+    }
+
+    /**
+     * 编码器从writeQueue取出已写完的报文，同时维护pendingWrites
+     */
+    public Object pollWrite() {
+        Object packet = writeQueue.poll();
+        if (packet != null)
+            pendingWrites.decrementAndGet();
+        return packet;
+    }
+
+    /**
+     * 在selector线程上注册的OP_WRITE在下一轮select生效，不需要wakeup
+     */
+    private boolean inSelectorThread() {
+        return processer instanceof NIOBase && ((NIOBase) processer).inSelectorThread();
+    }
+
+    /**
+     * 从连接读取数据，配置了transport时读到的是transport解密后的数据
+     */
+    public int channelRead(ByteBuffer dst) throws IOException {
+        return transport != null ? transport.read(dst) : channel.read(dst);
+    }
+
+    public int channelWrite(ByteBuffer src) throws IOException {
+        return transport != null ? transport.write(src) : channel.write(src);
+    }
+
+    public long channelWrite(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return transport != null ? transport.write(srcs, offset, length)
+                : channel.write(srcs, offset, length);
+    }
+
+    /**
+     * 写出transport中缓存的数据
+     *
+     * @return 1表示已全部写出，0表示需要等待下一次OP_WRITE
+     */
+    public int flushTransport() throws IOException {
+        return transport == null || transport.flush() ? 1 : 0;
+    }
+
+    /**
+     * selector线程和业务线程都会修改interestOps，需要同步避免互相覆盖
+     */
+    public synchronized void addInterestOps(int ops) {
+        key.interestOps(key.interestOps() | ops);
+    }
+
+    public synchronized void removeInterestOps(int ops) {
+        key.interestOps(key.interestOps() & ~ops);
+    }
+
+    /**
+     * 是否可以通过FileChannel.transferTo/transferFrom直接读写channel，配置了transport（如TLS）时不能绕过它
+     */
+    public boolean isZeroCopySupported() {
+        return transport == null;
+    }
+
+    /**
+     * 零拷贝发送文件的一部分，返回实际发送的字节数，socket缓冲区已满时返回0
+     */
+    public long transferFileTo(FileChannel fc, long position, long count) throws IOException {
+        long n = fc.transferTo(position, count, channel);
+        if (n > 0) {
+            writeCalls++;
+            writeBytes += n;
+        }
+        return n;
+    }
+
+    public double getMessagesPerFlush() {
+        return flushCount == 0 ? 0 : (double) writeMessages.get() / flushCount;
+    }
+
+    public double getBytesPerWrite() {
+        return writeCalls == 0 ? 0 : (double) writeBytes / writeCalls;
     }
 
     @Override
     public void close() throws IOException {
+        IOUtil.close(transport);
         IOUtil.close(channel);
         bufferPool.recycle(readBuffer);
         bufferPool.recycle(writeBuffer);
+        readBuffer = null;
+        writeBuffer = null;
         if (decodeCotext instanceof Closeable) {
             IOUtil.close((Closeable) decodeCotext);
         }
-        if (decodeCotext instanceof Closeable) {
-            IOUtil.close((Closeable) decodeCotext);
+        if (encodeCotext instanceof Closeable) {
+            IOUtil.close((Closeable) encodeCotext);
         }
     }
 
@@ -1,6 +1,7 @@
 package com.sjm.core.nio.core;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public abstract class ChannelDecoder implements ChannelHandler {
 
@@ -8,18 +9,35 @@ public abstract class ChannelDecoder implements ChannelHandler {
 
     @Override
     public int handle(ChannelContext ctx) throws IOException {
+        try {
+            return read(ctx);
+        } finally {
+            ctx.detachReadBuffer();
+        }
+    }
+
+    private int read(ChannelContext ctx) throws IOException {
         while (true) {
             int n = beforeRead(ctx);
             if (n <= 0) {
                 return n;
             }
-            n = ctx.channel.read(ctx.readBuffer);
+            if (!ctx.channel.isOpen()) {
+                return -1;
+            }
+            ByteBuffer readBuffer = ctx.attachReadBuffer();
+            n = ctx.channelRead(readBuffer);
             if (n <= 0) {
                 return n;
             }
-            ctx.readBuffer.flip();
+            boolean drained = ctx.transport == null && readBuffer.hasRemaining();
+            readBuffer.flip();
             while (decode(ctx));
-            ctx.readBuffer.clear();
+            readBuffer.clear();
+            if (ctx.readSuspended || drained) {
+                // 没有读满说明socket缓冲区已读空，剩余数据会再次触发OP_READ，省去一次返回0的read
+                return 0;
+            }
         }
     }
 
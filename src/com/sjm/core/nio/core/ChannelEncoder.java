@@ -1,27 +1,32 @@
 package com.sjm.core.nio.core;
 
 import java.io.IOException;
-import java.nio.channels.SelectionKey;
 
-public abstract class ChannelEncoder implements ChannelHandler {
+public abstract class ChannelEncoder extends AbstractEncoder {
 
     protected abstract boolean encode(ChannelContext ctx) throws IOException;
 
     @Override
     public int handle(ChannelContext ctx) throws IOException {
+        ctx.attachWriteBuffer();
         while (true) {
             if (ctx.writeBuffer.hasRemaining()) {
-                int n = ctx.channel.write(ctx.writeBuffer);
+                int n = ctx.channelWrite(ctx.writeBuffer);
                 if (n <= 0) {
                     return n;
                 }
+                ctx.writeCalls++;
+                ctx.writeBytes += n;
             } else {
-                int n = beforeWrite(ctx);
+                int n = ctx.flushTransport();
                 if (n <= 0) {
                     return n;
                 }
-                if (ctx.writeQueue.isEmpty()) {
-                    ctx.key.interestOps(ctx.key.interestOps() & ~SelectionKey.OP_WRITE);
+                n = beforeWrite(ctx);
+                if (n <= 0) {
+                    return n;
+                }
+                if (ctx.writeQueue.isEmpty() && finishFlush(ctx)) {
                     return 0;
                 }
                 ctx.writeBuffer.clear();
@@ -30,8 +35,4 @@ public abstract class ChannelEncoder implements ChannelHandler {
             }
         }
     }
-
-    protected int beforeWrite(ChannelContext ctx) throws IOException {
-        return 1;
-    }
 }
@@ -0,0 +1,103 @@
+package com.sjm.core.nio.core;
+
+import java.nio.channels.SelectionKey;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接的消息收件箱：将解码后的报文交给业务线程池处理，同一连接的报文按顺序串行执行。
+ * 
+ * 积压的报文数达到capacity时暂停该连接的OP_READ，消费到capacity/2以下时恢复。
+ */
+public class ChannelInbox implements Runnable {
+    private static final Object CLOSED = new Object();
+
+    private ChannelContext ctx;
+    private EventHandler handler;
+    private Executor executor;
+    private int capacity;
+    private Queue<Object> packets = new ConcurrentLinkedQueue<>();
+    private AtomicInteger size = new AtomicInteger();
+    private AtomicBoolean scheduled = new AtomicBoolean();
+
+    public ChannelInbox(ChannelContext ctx, EventHandler handler, Executor executor,
+            int capacity) {
+        this.ctx = ctx;
+        this.handler = handler;
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 在selector线程上调用
+     */
+    public void offer(Object packet) {
+        packets.offer(packet);
+        if (size.incrementAndGet() >= capacity)
+            suspendRead();
+        schedule();
+    }
+
+    /**
+     * 连接关闭后，onClose排在所有未处理报文之后执行
+     */
+    public void offerClose() {
+        packets.offer(CLOSED);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true))
+            executor.execute(this);
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Object packet;
+            while ((packet = packets.poll()) != null) {
+                try {
+                    if (packet == CLOSED) {
+                        handler.onClose(ctx);
+                        continue;
+                    }
+                    handler.onRead(ctx, packet);
+                } catch (Exception e) {
+                    NIOBase.logger.error(e.getMessage(), e);
+                }
+                if (size.decrementAndGet() <= capacity / 2 && ctx.readSuspended)
+                    resumeRead();
+            }
+            scheduled.set(false);
+            if (packets.isEmpty() || !scheduled.compareAndSet(false, true))
+                return;
+        }
+    }
+
+    private synchronized void suspendRead() {
+        if (size.get() >= capacity && ctx.key.isValid()) {
+            ctx.readSuspended = true;
+            ctx.removeInterestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private synchronized void resumeRead() {
+        if (ctx.readSuspended && size.get() <= capacity / 2) {
+            ctx.readSuspended = false;
+            if (ctx.key.isValid()) {
+                ctx.addInterestOps(SelectionKey.OP_READ);
+                ctx.selector.wakeup();
+                if (ctx.transport != null && ctx.transport.hasBufferedInput()
+                        && ctx.processer instanceof NIOBase)
+                    ((NIOBase) ctx.processer).readBuffered(ctx);
+            }
+        }
+    }
+}
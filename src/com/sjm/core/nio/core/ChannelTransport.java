@@ -0,0 +1,44 @@
+package com.sjm.core.nio.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 位于SocketChannel与编解码器之间的传输层（如TLS），编解码器通过它读写明文数据。
+ *
+ * 所有方法都在selector线程上调用。
+ */
+public interface ChannelTransport extends Closeable {
+    public interface Factory {
+        public ChannelTransport create(ChannelContext ctx) throws IOException;
+    }
+
+    /**
+     * 读取明文到dst
+     *
+     * @return 读取的字节数，需要等待更多网络数据时返回0，连接关闭时返回-1
+     */
+    public int read(ByteBuffer dst) throws IOException;
+
+    /**
+     * 写出srcs中的明文
+     *
+     * @return 接收的明文字节数，socket缓冲区已满或需要等待对端数据时返回0
+     */
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException;
+
+    public int write(ByteBuffer src) throws IOException;
+
+    /**
+     * 写出传输层内部缓存的数据（已加密的数据、握手消息等）
+     *
+     * @return true表示已全部写出
+     */
+    public boolean flush() throws IOException;
+
+    /**
+     * 是否缓存了尚未被read取走的数据，这部分数据不会再触发OP_READ
+     */
+    public boolean hasBufferedInput();
+}
@@ -18,4 +18,8 @@ public class EventHandler {
     public void onClose(ChannelContext ctx) throws IOException {
 
     }
+
+    public void onIdle(ChannelContext ctx, IdleState state) throws IOException {
+
+    }
 }
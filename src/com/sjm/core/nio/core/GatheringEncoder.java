@@ -0,0 +1,181 @@
+package com.sjm.core.nio.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 聚集写编码器：一次从队列中取出多个报文转换成ByteBuffer数组，通过一次GatheringByteChannel.write写出，
+ * 避免把每个报文拷贝到writeBuffer。
+ * 
+ * writeBuffer在这里只用作报文头等小块数据的分配区，每轮聚集开始时清空。
+ * 超过maxCopySize的body不申请池中的缓冲区，而是分多轮拷贝到writeBuffer写出，期间不聚集后面的报文。
+ */
+public abstract class GatheringEncoder extends AbstractEncoder {
+    protected static final int MERGED = -1;// 报文已合并进之前的ByteBuffer
+
+    protected int maxGather;// 每次write最多聚集的ByteBuffer数
+    protected int maxCopySize = 1024 * 1024;// 拷贝到池中缓冲区的body的最大长度
+
+    public static class GatherContext implements Closeable {
+        public ByteBuffer[] buffers;
+        public int offset;
+        public int length;
+        public ByteBufferPool pool;
+        public List<ByteBuffer> pooled = new ArrayList<>();// 本轮写完后归还给池的缓冲区
+        public byte[] streaming;// 正在分段经writeBuffer写出的body
+        public int streamOffset;
+
+        public void recyclePooled() {
+            for (int i = 0; i < pooled.size(); i++)
+                pool.recycle(pooled.get(i));
+            pooled.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            recyclePooled();
+        }
+    }
+
+    public GatheringEncoder(int maxGather) {
+        if (maxGather < 2)
+            throw new IllegalArgumentException("maxGather=" + maxGather);
+        this.maxGather = maxGather;
+    }
+
+    public GatheringEncoder() {
+        this(64);
+    }
+
+    /**
+     * 超过该长度的body分段经writeBuffer写出，不申请池中的缓冲区
+     */
+    public GatheringEncoder setMaxCopySize(int maxCopySize) {
+        if (maxCopySize <= 0)
+            throw new IllegalArgumentException("maxCopySize=" + maxCopySize);
+        this.maxCopySize = maxCopySize;
+        return this;
+    }
+
+    /**
+     * 将报文转换成ByteBuffer放入buffers[off]开始的位置
+     * 
+     * @return 使用的ByteBuffer个数，空间不足时返回0，报文将留到下一轮；报文追加到了buffers[off - 1]中时返回MERGED
+     */
+    protected abstract int gather(ChannelContext ctx, Object packet, ByteBuffer[] buffers, int off)
+            throws IOException;
+
+    @Override
+    public int handle(ChannelContext ctx) throws IOException {
+        GatherContext gc = getGatherContext(ctx);
+        ctx.attachWriteBuffer();
+        while (true) {
+            if (gc.offset < gc.length) {
+                long n = ctx.channelWrite(gc.buffers, gc.offset, gc.length - gc.offset);
+                if (n <= 0) {
+                    return (int) n;
+                }
+                ctx.writeCalls++;
+                ctx.writeBytes += n;
+                while (gc.offset < gc.length && !gc.buffers[gc.offset].hasRemaining()) {
+                    gc.buffers[gc.offset++] = null;
+                }
+            } else {
+                gc.recyclePooled();
+                int n = ctx.flushTransport();
+                if (n <= 0) {
+                    return n;
+                }
+                n = beforeWrite(ctx);
+                if (n <= 0) {
+                    return n;
+                }
+                if (gc.streaming == null && ctx.writeQueue.isEmpty() && finishFlush(ctx)) {
+                    return 0;
+                }
+                gc.offset = gc.length = 0;
+                ctx.writeBuffer.clear();
+                if (gc.streaming != null)
+                    gc.buffers[gc.length++] = nextChunk(ctx, gc);
+                Object packet = null;
+                while (gc.streaming == null && (packet = ctx.writeQueue.peek()) != null) {
+                    int count = gather(ctx, packet, gc.buffers, gc.length);
+                    if (count == 0)
+                        break;
+                    if (count != MERGED)
+                        gc.length += count;
+                    ctx.pollWrite();
+                }
+                ctx.writeBuffer.limit(ctx.writeBuffer.position());
+                if (gc.length == 0 && packet != null)
+                    throw new IOException("Packet can not be gathered: " + packet);
+            }
+        }
+    }
+
+    /**
+     * 从池中申请缓冲区存放本轮要写出的数据，写完后自动归还
+     */
+    protected ByteBuffer applyPooled(ChannelContext ctx, int size) {
+        ByteBuffer buffer = ctx.bufferPool.apply(size, ctx);
+        getGatherContext(ctx).pooled.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * 把堆内的body拷贝到直接内存：放得下时拷贝到writeBuffer，不超过maxCopySize时拷贝到池中申请的缓冲区，
+     * 否则返回第一段，剩余部分在之后的轮次中经writeBuffer写出，本轮不再聚集后面的报文。
+     *
+     * 堆内的ByteBuffer交给channel写出时，JDK会先拷贝到线程缓存的临时直接缓冲区，不受池的maxMemory限制
+     */
+    protected ByteBuffer copyDirect(ChannelContext ctx, byte[] data) {
+        ByteBuffer buffer;
+        if (data.length <= ctx.writeBuffer.remaining()) {
+            buffer = ctx.writeBuffer.slice();
+            ctx.writeBuffer.position(ctx.writeBuffer.position() + data.length);
+        } else if (data.length <= maxCopySize) {
+            buffer = applyPooled(ctx, data.length);
+        } else {
+            GatherContext gc = getGatherContext(ctx);
+            gc.streaming = data;
+            gc.streamOffset = 0;
+            return nextChunk(ctx, gc);
+        }
+        buffer.put(data).flip();
+        return buffer;
+    }
+
+    /**
+     * 把正在写出的body的下一段拷贝到writeBuffer
+     */
+    private ByteBuffer nextChunk(ChannelContext ctx, GatherContext gc) {
+        int n = Math.min(gc.streaming.length - gc.streamOffset, ctx.writeBuffer.remaining());
+        ByteBuffer chunk = ctx.writeBuffer.slice();
+        chunk.put(gc.streaming, gc.streamOffset, n).flip();
+        ctx.writeBuffer.position(ctx.writeBuffer.position() + n);
+        gc.streamOffset += n;
+        if (gc.streamOffset == gc.streaming.length)
+            gc.streaming = null;
+        return chunk;
+    }
+
+    /**
+     * 子类可以扩展GatherContext保存每个连接的编码状态
+     */
+    protected GatherContext newGatherContext(ChannelContext ctx) {
+        return new GatherContext();
+    }
+
+    protected GatherContext getGatherContext(ChannelContext ctx) {
+        GatherContext gc = (GatherContext) ctx.encodeCotext;
+        if (gc == null) {
+            ctx.encodeCotext = gc = newGatherContext(ctx);
+            gc.buffers = new ByteBuffer[maxGather];
+            gc.pool = ctx.bufferPool;
+        }
+        return gc;
+    }
+}
@@ -0,0 +1,7 @@
+package com.sjm.core.nio.core;
+
+public enum IdleState {
+    READER_IDLE, // 超时未读到数据
+    WRITER_IDLE, // 超时未写出数据
+    ALL_IDLE, // 超时未读写数据
+}
@@ -6,7 +6,10 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 import com.sjm.core.logger.Logger;
 import com.sjm.core.logger.LoggerFactory;
@@ -19,8 +22,17 @@ public abstract class NIOBase implements PacketProcesser, Runnable {
     protected ByteBufferPool bufferPool;
     protected ChannelHandler encoder, decoder;
     protected EventHandler handler;
-    protected boolean isOpen = true;
-    protected Selector selector;
+    protected volatile boolean isOpen = true;
+    protected volatile Selector selector;
+    protected Executor executor;
+    protected int inboxCapacity;
+    protected TimerWheel timer;
+    protected long tickMillis = 100;
+    protected int wheelSize = 512;
+    protected long readIdleMillis, writeIdleMillis, allIdleMillis;
+    protected Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    protected volatile Thread selectorThread;
+    protected ChannelTransport.Factory transportFactory;
 
     public NIOBase(ByteBufferPool bufferPool, ChannelHandler encoder, ChannelHandler decoder,
             EventHandler handler) {
@@ -30,62 +42,164 @@ public abstract class NIOBase implements PacketProcesser, Runnable {
         this.handler = handler;
     }
 
+    /**
+     * 将EventHandler的onRead/onClose交给业务线程池执行，同一连接内保持顺序
+     * 
+     * @param executor 业务线程池，为null时在selector线程上直接执行
+     * @param inboxCapacity 每个连接最多积压的报文数，达到后暂停读取该连接
+     */
+    public void setExecutor(Executor executor, int inboxCapacity) {
+        if (executor != null && inboxCapacity <= 0)
+            throw new IllegalArgumentException("inboxCapacity=" + inboxCapacity);
+        this.executor = executor;
+        this.inboxCapacity = inboxCapacity;
+    }
+
+    /**
+     * 设置连接的空闲超时，超时后回调EventHandler.onIdle，为0表示不检测
+     */
+    public void setIdleTimeout(long readIdleMillis, long writeIdleMillis, long allIdleMillis) {
+        this.readIdleMillis = readIdleMillis;
+        this.writeIdleMillis = writeIdleMillis;
+        this.allIdleMillis = allIdleMillis;
+    }
+
+    /**
+     * 设置时间轮的精度和槽数，需要在start之前调用
+     */
+    public void setTimerWheel(long tickMillis, int wheelSize) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+    }
+
+    /**
+     * 为每个连接创建传输层（如{@link SSLTransport}），需要在start之前调用
+     */
+    public void setTransport(ChannelTransport.Factory transportFactory) {
+        this.transportFactory = transportFactory;
+    }
+
+    /**
+     * 在selector线程上尽快执行任务，可以在任意线程调用
+     */
+    public void execute(Runnable task) {
+        pendingTasks.offer(task);
+        Selector s = selector;
+        if (s != null)
+            s.wakeup();
+    }
+
+    /**
+     * 在selector线程上延迟执行任务，可以在任意线程调用
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        if (inSelectorThread()) {
+            timer.schedule(task, delayMillis, now());
+        } else {
+            execute(() -> timer.schedule(task, delayMillis, now()));
+        }
+    }
+
+    /**
+     * 在selector线程上延迟执行任务，只能在selector线程调用，返回的Timeout可以用cancel取消
+     */
+    public TimerWheel.Timeout scheduleTimeout(Runnable task, long delayMillis) {
+        return timer.schedule(task, delayMillis, now());
+    }
+
+    /**
+     * 取消scheduleTimeout安排的任务，只能在selector线程调用
+     */
+    public void cancel(TimerWheel.Timeout timeout) {
+        timer.cancel(timeout);
+    }
+
+    public boolean inSelectorThread() {
+        return Thread.currentThread() == selectorThread;
+    }
+
+    static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
     protected abstract Closeable openChannel() throws IOException;
 
     protected abstract SocketChannel processConnect(SelectionKey key) throws IOException;
 
     protected abstract boolean shutdownOnClose();
 
+    protected void onStartup() throws IOException {
+        handler.onStartup(this);
+    }
+
+    /**
+     * 每轮select之前在selector线程上执行，用于处理其他线程提交的任务
+     */
+    protected void beforeSelect() throws IOException {}
+
     @Override
     public void run() {
         try {
             isOpen = true;
+            selectorThread = Thread.currentThread();
+            timer = new TimerWheel(tickMillis, wheelSize, now());
             selector = Selector.open();
             channel = openChannel();
-            handler.onStartup(this);
+            onStartup();
             while (isOpen) {
-                selector.select();
+                Runnable task;
+                while ((task = pendingTasks.poll()) != null)
+                    task.run();
+                beforeSelect();
+                selector.select(timer.getSelectTimeout(now()));
+                long now = now();
                 Set<SelectionKey> selectionKeys = selector.selectedKeys();
                 Iterator<SelectionKey> iterator = selectionKeys.iterator();
                 while (iterator.hasNext()) {
                     ChannelContext ctx = null;
+                    SocketChannel unregistered = null;// 还没有创建ChannelContext的连接
                     int n = 0;
                     try {
                         SelectionKey key = iterator.next();
                         iterator.remove();
-                        SocketChannel sc = processConnect(key);
+                        SocketChannel sc = unregistered = processConnect(key);
                         if (sc != null) {
-                            SelectionKey k = sc.register(selector, SelectionKey.OP_READ);
-                            ctx = new ChannelContext(sc, selector, k, encoder, decoder, bufferPool,
-                                    this);
-                            k.attach(ctx);
-                            handler.onConnect(ctx);
+                            ctx = register(sc);
+                            unregistered = null;
+                            if (ctx == null)
+                                continue;
                             if (!ctx.channel.isOpen()) {
                                 n = -1;
                             }
                         }
-                        if (n != -1 && (key.isReadable() || key.isWritable())) {
+                        if (n != -1 && key.isValid() && (key.isReadable() || key.isWritable())) {
                             ctx = (ChannelContext) key.attachment();
-                            if (key.isWritable())
+                            if (key.isWritable()) {
+                                ctx.lastWriteTime = now;
                                 n = ctx.encoder.handle(ctx);
-                            if (key.isReadable())
+                            }
+                            if (n != -1 && key.isReadable()) {
+                                ctx.lastReadTime = now;
                                 n = ctx.decoder.handle(ctx);
+                                // 处理读事件时产生的响应直接写出，省去一轮select和OP_WRITE的注册
+                                if (n != -1 && ctx.flushScheduled.get() && key.isValid()) {
+                                    ctx.lastWriteTime = now;
+                                    n = ctx.encoder.handle(ctx);
+                                }
+                            }
                         }
                     } catch (Exception e) {
                         logger.error(e.getMessage(), e);
                         n = -1;
                     }
                     if (n == -1) {
-                        try {
-                            handler.onClose(ctx);
-                        } catch (Exception e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                        IOUtil.close(ctx);
-                        if (shutdownOnClose())
-                            shutdown();
+                        if (ctx != null)
+                            close(ctx);
+                        else if (unregistered != null)
+                            closeUnregistered(unregistered);
                     }
                 }
+                timer.advance(now());
             }
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
@@ -93,8 +207,144 @@ public abstract class NIOBase implements PacketProcesser, Runnable {
         shutdown();
     }
 
+    /**
+     * 创建ChannelContext并回调onConnect
+     *
+     * @return 创建ChannelContext之后的步骤失败时已经通过close(ctx)关闭连接，返回null
+     * @throws IOException 创建ChannelContext之前失败，由调用方关闭sc
+     */
+    protected ChannelContext register(SocketChannel sc) throws IOException {
+        SelectionKey k = sc.register(selector, SelectionKey.OP_READ);
+        ChannelContext ctx = new ChannelContext(sc, selector, k, encoder, decoder, bufferPool, this);
+        k.attach(ctx);
+        ctx.lastReadTime = ctx.lastWriteTime = now();
+        ctx.readIdleTimeout = startIdleTimer(ctx, IdleState.READER_IDLE, readIdleMillis);
+        ctx.writeIdleTimeout = startIdleTimer(ctx, IdleState.WRITER_IDLE, writeIdleMillis);
+        ctx.allIdleTimeout = startIdleTimer(ctx, IdleState.ALL_IDLE, allIdleMillis);
+        try {
+            if (transportFactory != null)
+                ctx.transport = transportFactory.create(ctx);
+            if (executor != null)
+                ctx.inbox = new ChannelInbox(ctx, handler, executor, inboxCapacity);
+            handler.onConnect(ctx);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            close(ctx);
+            return null;
+        }
+        return ctx;
+    }
+
+    /**
+     * register在创建ChannelContext之前失败的连接
+     */
+    protected void closeUnregistered(SocketChannel sc) {
+        IOUtil.close(sc);
+        if (shutdownOnClose())
+            shutdown();
+    }
+
+    private TimerWheel.Timeout startIdleTimer(ChannelContext ctx, IdleState state, long timeout) {
+        if (timeout <= 0)
+            return null;
+        IdleTask task = new IdleTask(ctx, state, timeout);
+        return task.timeout = timer.schedule(task, timeout, now());
+    }
+
+    /**
+     * 到期时检查最后一次读写的时间，未超时则按剩余时间重新安排，每个连接每种超时只占用一个Timeout
+     */
+    class IdleTask implements Runnable {
+        ChannelContext ctx;
+        IdleState state;
+        long timeoutMillis;
+        TimerWheel.Timeout timeout;
+
+        IdleTask(ChannelContext ctx, IdleState state, long timeoutMillis) {
+            this.ctx = ctx;
+            this.state = state;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run() {
+            if (!ctx.channel.isOpen())
+                return;
+            long now = now();
+            long last;
+            if (state == IdleState.READER_IDLE)
+                last = ctx.lastReadTime;
+            else if (state == IdleState.WRITER_IDLE)
+                last = ctx.lastWriteTime;
+            else
+                last = Math.max(ctx.lastReadTime, ctx.lastWriteTime);
+            long delay = last + timeoutMillis - now;
+            if (delay > 0) {
+                timer.reschedule(timeout, delay, now);
+                return;
+            }
+            timer.reschedule(timeout, timeoutMillis, now);
+            try {
+                handler.onIdle(ctx, state);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                IOUtil.close(ctx.channel);
+            }
+            if (!ctx.channel.isOpen())
+                close(ctx);
+        }
+    }
+
+    /**
+     * 恢复读取时，transport中已缓存的数据不会再触发OP_READ，需要主动交给解码器
+     */
+    void readBuffered(ChannelContext ctx) {
+        execute(() -> {
+            if (!ctx.channel.isOpen() || ctx.readSuspended)
+                return;
+            int n;
+            try {
+                n = ctx.decoder.handle(ctx);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                n = -1;
+            }
+            if (n == -1)
+                close(ctx);
+        });
+    }
+
+    protected void close(ChannelContext ctx) {
+        if (ctx != null) {
+            cancelTimer(ctx.readIdleTimeout);
+            cancelTimer(ctx.writeIdleTimeout);
+            cancelTimer(ctx.allIdleTimeout);
+        }
+        if (ctx != null && ctx.inbox != null) {
+            ctx.inbox.offerClose();
+        } else {
+            try {
+                handler.onClose(ctx);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        IOUtil.close(ctx);
+        if (shutdownOnClose())
+            shutdown();
+    }
+
+    private void cancelTimer(TimerWheel.Timeout timeout) {
+        if (timeout != null)
+            timer.cancel(timeout);
+    }
+
     @Override
     public void process(ChannelContext ctx, Object packet) {
+        if (ctx.inbox != null) {
+            ctx.inbox.offer(packet);
+            return;
+        }
         try {
             handler.onRead(ctx, packet);
         } catch (Exception e) {
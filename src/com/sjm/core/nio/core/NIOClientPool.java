@@ -0,0 +1,248 @@
+package com.sjm.core.nio.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sjm.core.util.core.IOUtil;
+
+/**
+ * 客户端连接池：在同一个selector上为每个服务端地址维持固定数量的连接。
+ *
+ * 连接断开或连接失败后按指数退避自动重连，定时检查连接健康状况并关闭不健康的连接；
+ * {@link #getConnection()}返回写队列最短的可用连接。
+ */
+public class NIOClientPool extends NIOBase {
+
+    public interface HealthChecker {
+        public boolean isHealthy(ChannelContext ctx, long now);
+    }
+
+    static class Slot {
+        public final InetSocketAddress address;
+        public SocketChannel connecting;
+        public volatile ChannelContext ctx;
+        public int failures;// 连续失败次数，用于计算重连间隔
+
+        public Slot(InetSocketAddress address) {
+            this.address = address;
+        }
+    }
+
+    private Slot[] slots;
+    private long minReconnectMillis = 100;
+    private long maxReconnectMillis = 30000;
+    private long healthCheckMillis = 1000;
+    private HealthChecker healthChecker;
+
+    /**
+     * @param addresses 服务端地址
+     * @param connectionsPerAddress 每个地址保持的连接数
+     */
+    public NIOClientPool(List<InetSocketAddress> addresses, int connectionsPerAddress,
+            ByteBufferPool bufferPool, ChannelHandler encoder, ChannelHandler decoder,
+            EventHandler handler) {
+        super(bufferPool, encoder, decoder, handler);
+        if (addresses.isEmpty() || connectionsPerAddress <= 0)
+            throw new IllegalArgumentException(
+                    "addresses=" + addresses + " connectionsPerAddress=" + connectionsPerAddress);
+        this.slots = new Slot[addresses.size() * connectionsPerAddress];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = new Slot(addresses.get(i / connectionsPerAddress));
+        this.healthChecker = stalledWriteChecker(10000);
+    }
+
+    public NIOClientPool(String host, int port, int connections, ByteBufferPool bufferPool,
+            ChannelHandler encoder, ChannelHandler decoder, EventHandler handler) {
+        this(Arrays.asList(new InetSocketAddress(host, port)), connections, bufferPool, encoder,
+                decoder, handler);
+    }
+
+    /**
+     * 重连间隔从minMillis开始，每失败一次翻倍，最大为maxMillis
+     */
+    public void setReconnectBackoff(long minMillis, long maxMillis) {
+        if (minMillis <= 0 || maxMillis < minMillis)
+            throw new IllegalArgumentException("minMillis=" + minMillis + " maxMillis=" + maxMillis);
+        this.minReconnectMillis = minMillis;
+        this.maxReconnectMillis = maxMillis;
+    }
+
+    /**
+     * @param intervalMillis 检查间隔，为0表示不检查
+     * @param checker 返回false的连接会被关闭并重连
+     */
+    public void setHealthCheck(long intervalMillis, HealthChecker checker) {
+        this.healthCheckMillis = intervalMillis;
+        this.healthChecker = checker;
+    }
+
+    /**
+     * 写队列非空，且从开始刷出或最后一次写事件起超过stallMillis没有进展（对端不再读取）的连接视为不健康。
+     *
+     * 从开始刷出算起，空闲很久的连接刚写入报文时不会被误判
+     */
+    public static HealthChecker stalledWriteChecker(long stallMillis) {
+        return (ctx, now) -> ctx.pendingWrites.get() == 0
+                || now - Math.max(ctx.flushStartTime, ctx.lastWriteTime) < stallMillis;
+    }
+
+    /**
+     * 返回写队列最短的可用连接，没有可用连接时返回null
+     */
+    public ChannelContext getConnection() {
+        ChannelContext result = null;
+        int min = Integer.MAX_VALUE;
+        for (Slot slot : slots) {
+            ChannelContext ctx = slot.ctx;
+            if (ctx == null || !ctx.channel.isOpen())
+                continue;
+            int depth = ctx.pendingWrites.get();
+            if (depth < min) {
+                result = ctx;
+                min = depth;
+                if (depth == 0)
+                    break;
+            }
+        }
+        return result;
+    }
+
+    public int getActiveCount() {
+        int count = 0;
+        for (Slot slot : slots) {
+            ChannelContext ctx = slot.ctx;
+            if (ctx != null && ctx.channel.isOpen())
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    protected Closeable openChannel() throws IOException {
+        for (Slot slot : slots)
+            connect(slot);
+        return () -> {
+            for (Slot slot : slots) {
+                IOUtil.close(slot.connecting);
+                IOUtil.close(slot.ctx);
+            }
+        };
+    }
+
+    @Override
+    protected void onStartup() throws IOException {
+        super.onStartup();
+        if (healthCheckMillis > 0)
+            schedule(this::checkHealth, healthCheckMillis);
+    }
+
+    private void connect(Slot slot) {
+        if (!isOpen)
+            return;
+        SocketChannel sc = null;
+        try {
+            sc = SocketChannel.open();
+            sc.configureBlocking(false);
+            sc.connect(slot.address);
+            sc.register(selector, SelectionKey.OP_CONNECT, slot);
+            slot.connecting = sc;
+        } catch (IOException e) {
+            logger.error("Connect to " + slot.address + " failed: " + e.getMessage());
+            IOUtil.close(sc);
+            reconnectLater(slot);
+        }
+    }
+
+    private void reconnectLater(Slot slot) {
+        int shift = Math.min(slot.failures++, 30);
+        long delay = Math.min(minReconnectMillis << shift, maxReconnectMillis);
+        if (delay <= 0)
+            delay = maxReconnectMillis;
+        schedule(() -> connect(slot), delay);
+    }
+
+    @Override
+    protected SocketChannel processConnect(SelectionKey key) throws IOException {
+        if (key.isConnectable()) {
+            Slot slot = (Slot) key.attachment();
+            SocketChannel sc = (SocketChannel) key.channel();
+            try {
+                if (sc.isConnectionPending())
+                    sc.finishConnect();
+            } catch (IOException e) {
+                logger.error("Connect to " + slot.address + " failed: " + e.getMessage());
+                slot.connecting = null;
+                IOUtil.close(sc);
+                reconnectLater(slot);
+                return null;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_CONNECT);
+            return sc;
+        }
+        return null;
+    }
+
+    @Override
+    protected ChannelContext register(SocketChannel sc) throws IOException {
+        Slot slot = (Slot) sc.keyFor(selector).attachment();
+        slot.connecting = null;
+        slot.failures = 0;
+        ChannelContext ctx;
+        try {
+            ctx = super.register(sc);
+        } catch (IOException | RuntimeException e) {
+            reconnectLater(slot);
+            throw e;
+        }
+        if (ctx == null)
+            reconnectLater(slot);// 已经关闭，slot.ctx还没有设置，close中不会重连
+        else
+            slot.ctx = ctx;
+        return ctx;
+    }
+
+    @Override
+    protected void close(ChannelContext ctx) {
+        super.close(ctx);
+        if (ctx == null)
+            return;
+        for (Slot slot : slots) {
+            if (slot.ctx == ctx) {
+                slot.ctx = null;
+                reconnectLater(slot);
+                break;
+            }
+        }
+    }
+
+    private void checkHealth() {
+        long now = now();
+        for (Slot slot : slots) {
+            ChannelContext ctx = slot.ctx;
+            if (ctx == null)
+                continue;
+            boolean healthy;
+            try {
+                healthy = ctx.channel.isOpen() && healthChecker.isHealthy(ctx, now);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                healthy = false;
+            }
+            if (!healthy) {
+                logger.warn("Close unhealthy connection " + ctx);
+                close(ctx);
+            }
+        }
+        schedule(this::checkHealth, healthCheckMillis);
+    }
+
+    @Override
+    protected boolean shutdownOnClose() {
+        return false;
+    }
+}
@@ -9,15 +9,34 @@ import java.nio.channels.SocketChannel;
 
 public class NIOServer extends NIOBase {
     protected int port;
+    protected NIOWorker[] workers;
+    protected int nextWorker;
 
     public NIOServer(int port, ByteBufferPool bufferPool, ChannelHandler encoder,
             ChannelHandler decoder, EventHandler handler) {
+        this(port, 0, bufferPool, encoder, decoder, handler);
+    }
+
+    /**
+     * @param workerCount 工作线程数，为0时由监听线程处理所有连接（单Reactor）；大于0时监听线程只负责accept，
+     *        连接按负载最小原则分配给各个工作线程（多Reactor）
+     */
+    public NIOServer(int port, int workerCount, ByteBufferPool bufferPool, ChannelHandler encoder,
+            ChannelHandler decoder, EventHandler handler) {
         super(bufferPool, encoder, decoder, handler);
+        if (workerCount < 0)
+            throw new IllegalArgumentException("workerCount=" + workerCount);
         this.port = port;
+        this.workers = new NIOWorker[workerCount];
     }
 
     @Override
     protected Closeable openChannel() throws IOException {
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new NIOWorker(bufferPool, encoder, decoder, handler);
+            initWorker(workers[i]);
+            workers[i].start();
+        }
         ServerSocketChannel ssc = ServerSocketChannel.open();
         ssc.socket().bind(new InetSocketAddress(port));
         ssc.configureBlocking(false);
@@ -25,19 +44,50 @@ public class NIOServer extends NIOBase {
         return ssc;
     }
 
+    protected void initWorker(NIOWorker worker) {
+        worker.setExecutor(executor, inboxCapacity);
+        worker.setIdleTimeout(readIdleMillis, writeIdleMillis, allIdleMillis);
+        worker.setTimerWheel(tickMillis, wheelSize);
+        worker.setTransport(transportFactory);
+    }
+
     @Override
     protected SocketChannel processConnect(SelectionKey key) throws IOException {
         if (key.isAcceptable()) {
             ServerSocketChannel server = (ServerSocketChannel) key.channel();
             SocketChannel sc = server.accept();
+            if (sc == null)
+                return null;
             sc.configureBlocking(false);
-            return sc;
+            if (workers.length == 0)
+                return sc;
+            chooseWorker().dispatch(sc);
         }
         return null;
     }
 
+    protected NIOWorker chooseWorker() {
+        int start = nextWorker;
+        nextWorker = (start + 1) % workers.length;
+        NIOWorker worker = workers[start];
+        for (int i = 1; i < workers.length; i++) {
+            NIOWorker w = workers[(start + i) % workers.length];
+            if (w.getConnectionCount() < worker.getConnectionCount())
+                worker = w;
+        }
+        return worker;
+    }
+
     @Override
     protected boolean shutdownOnClose() {
         return false;
     }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        for (NIOWorker worker : workers)
+            if (worker != null)
+                worker.shutdown();
+    }
 }
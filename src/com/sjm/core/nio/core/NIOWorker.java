@@ -0,0 +1,89 @@
+package com.sjm.core.nio.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sjm.core.util.core.IOUtil;
+
+/**
+ * 多Reactor模式下的工作线程：不监听端口，只负责处理由{@link NIOServer}分配过来的连接
+ */
+public class NIOWorker extends NIOBase {
+    private Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private AtomicInteger connectionCount = new AtomicInteger();
+
+    public NIOWorker(ByteBufferPool bufferPool, ChannelHandler encoder, ChannelHandler decoder,
+            EventHandler handler) {
+        super(bufferPool, encoder, decoder, handler);
+    }
+
+    public void dispatch(SocketChannel sc) {
+        connectionCount.incrementAndGet();
+        pendingChannels.offer(sc);
+        Selector s = selector;
+        if (s != null)
+            s.wakeup();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    @Override
+    protected Closeable openChannel() throws IOException {
+        return null;
+    }
+
+    @Override
+    protected SocketChannel processConnect(SelectionKey key) throws IOException {
+        return null;
+    }
+
+    @Override
+    protected boolean shutdownOnClose() {
+        return false;
+    }
+
+    @Override
+    protected void onStartup() throws IOException {}
+
+    @Override
+    protected void beforeSelect() throws IOException {
+        SocketChannel sc;
+        while ((sc = pendingChannels.poll()) != null) {
+            ChannelContext ctx;
+            try {
+                ctx = register(sc);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                connectionCount.decrementAndGet();
+                IOUtil.close(sc);
+                continue;
+            }
+            // register返回null时已经关闭
+            if (ctx != null && !ctx.channel.isOpen())
+                close(ctx);
+        }
+    }
+
+    @Override
+    protected void close(ChannelContext ctx) {
+        if (ctx != null)
+            connectionCount.decrementAndGet();
+        super.close(ctx);
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        SocketChannel sc;
+        while ((sc = pendingChannels.poll()) != null)
+            IOUtil.close(sc);
+    }
+}
@@ -0,0 +1,318 @@
+package com.sjm.core.nio.core;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * 基于SSLEngine的TLS传输层，握手、加解密和重协商都在selector线程上以非阻塞方式完成。
+ *
+ * 密文的收发缓存和解密后的明文缓存都从ByteBufferPool申请，连接关闭时归还。
+ * 握手需要等待对端数据时暂停OP_WRITE，收到数据后再恢复，避免selector空转。
+ */
+public class SSLTransport implements ChannelTransport {
+    private static final ByteBuffer[] EMPTY = {ByteBuffer.allocate(0)};
+
+    private ChannelContext ctx;
+    private SocketChannel channel;
+    private SSLEngine engine;
+    private ByteBuffer netIn;// 收到的密文，写模式
+    private ByteBuffer netOut;// 待发送的密文，读模式
+    private ByteBuffer appIn;// 解密后尚未读取的明文，读模式
+    private ByteBuffer[] single = new ByteBuffer[1];
+    private boolean needInput = true;// netIn中的数据不足一个完整的记录
+    private boolean inboundClosed;
+    private boolean writeBlocked;// 握手等待对端数据，暂停了OP_WRITE
+    private volatile boolean bufferedInput;
+
+    public SSLTransport(ChannelContext ctx, SSLEngine engine) throws IOException {
+        this.ctx = ctx;
+        this.channel = ctx.channel;
+        this.engine = engine;
+        int packetSize = engine.getSession().getPacketBufferSize();
+        int appSize = engine.getSession().getApplicationBufferSize();
+        netIn = ctx.bufferPool.apply(packetSize, ctx);
+        netOut = ctx.bufferPool.apply(packetSize, ctx);
+        appIn = ctx.bufferPool.apply(appSize, ctx);
+        netOut.limit(0);
+        appIn.limit(0);
+        engine.beginHandshake();
+        if (engine.getUseClientMode())
+            requestWrite();
+    }
+
+    public static ChannelTransport.Factory server(SSLContext context) {
+        return ctx -> {
+            SSLEngine engine = context.createSSLEngine();
+            engine.setUseClientMode(false);
+            return new SSLTransport(ctx, engine);
+        };
+    }
+
+    public static ChannelTransport.Factory client(SSLContext context) {
+        return ctx -> {
+            InetSocketAddress remote = (InetSocketAddress) ctx.channel.getRemoteAddress();
+            SSLEngine engine =
+                    context.createSSLEngine(remote.getHostString(), remote.getPort());
+            engine.setUseClientMode(true);
+            return new SSLTransport(ctx, engine);
+        };
+    }
+
+    /**
+     * 用同一个keystore作为证书和信任库创建SSLContext，适用于自签名证书
+     */
+    public static SSLContext createContext(String keyStorePath, String password)
+            throws IOException, GeneralSecurityException {
+        char[] pwd = password.toCharArray();
+        KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream is = new FileInputStream(keyStorePath)) {
+            ks.load(is, pwd);
+        }
+        KeyManagerFactory kmf =
+                KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, pwd);
+        TrustManagerFactory tmf =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(ks);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+        return context;
+    }
+
+    public SSLEngine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        try {
+            while (true) {
+                if (appIn.hasRemaining())
+                    return copy(appIn, dst);
+                if (inboundClosed)
+                    return -1;
+                if (needInput) {
+                    int n = channel.read(netIn);
+                    if (n < 0) {
+                        inboundClosed = true;
+                        closeInbound();
+                        return -1;
+                    }
+                    if (n == 0)
+                        return 0;
+                }
+                netIn.flip();
+                appIn.clear();
+                SSLEngineResult result;
+                try {
+                    result = engine.unwrap(netIn, appIn);
+                } finally {
+                    netIn.compact();
+                    appIn.flip();
+                }
+                switch (result.getStatus()) {
+                    case BUFFER_UNDERFLOW:
+                        needInput = true;
+                        if (!netIn.hasRemaining())
+                            throw new SSLException("Record larger than " + netIn.capacity());
+                        break;
+                    case BUFFER_OVERFLOW:
+                        throw new SSLException("Application buffer overflow " + appIn.capacity());
+                    case CLOSED:
+                        inboundClosed = true;
+                        engine.closeOutbound();
+                        break;
+                    default:
+                        needInput = netIn.position() == 0;
+                        break;
+                }
+                handshake(result.getHandshakeStatus());
+            }
+        } finally {
+            bufferedInput = appIn.hasRemaining() || !needInput;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        single[0] = src;
+        try {
+            return (int) write(single, 0, 1);
+        } finally {
+            single[0] = null;
+        }
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (!flush())
+            return 0;
+        long consumed = 0;
+        while (hasRemaining(srcs, offset, length)) {
+            SSLEngineResult result = wrap(srcs, offset, length);
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+                throw new SSLException("SSLEngine closed");
+            consumed += result.bytesConsumed();
+            handshake(result.getHandshakeStatus());
+            if (!flushNet())
+                break;
+            if (result.bytesConsumed() == 0) {
+                if (engine.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP)
+                    blockWrite();
+                break;
+            }
+        }
+        return consumed;
+    }
+
+    @Override
+    public boolean flush() throws IOException {
+        if (!flushNet())
+            return false;
+        handshake(engine.getHandshakeStatus());
+        if (netOut.hasRemaining())
+            return false;
+        if (engine.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP && !inboundClosed) {
+            blockWrite();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasBufferedInput() {
+        return bufferedInput;
+    }
+
+    /**
+     * 推进握手状态机，需要写出的握手消息写不完时注册OP_WRITE
+     */
+    private void handshake(HandshakeStatus status) throws IOException {
+        while (true) {
+            switch (status) {
+                case NEED_TASK: {
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null)
+                        task.run();
+                    status = engine.getHandshakeStatus();
+                    break;
+                }
+                case NEED_WRAP: {
+                    if (!flushNet()) {
+                        requestWrite();
+                        return;
+                    }
+                    SSLEngineResult result = wrap(EMPTY, 0, 1);
+                    if (!flushNet())
+                        requestWrite();
+                    if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+                        return;
+                    status = result.getHandshakeStatus();
+                    break;
+                }
+                default:
+                    if (writeBlocked && status != HandshakeStatus.NEED_UNWRAP) {
+                        writeBlocked = false;
+                        requestWrite();
+                    }
+                    return;
+            }
+        }
+    }
+
+    private SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        netOut.clear();
+        try {
+            SSLEngineResult result = engine.wrap(srcs, offset, length, netOut);
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW)
+                throw new SSLException("Packet buffer overflow " + netOut.capacity());
+            return result;
+        } finally {
+            netOut.flip();
+        }
+    }
+
+    private boolean flushNet() throws IOException {
+        while (netOut.hasRemaining()) {
+            if (channel.write(netOut) <= 0)
+                return false;
+        }
+        return true;
+    }
+
+    private void requestWrite() {
+        ctx.flushScheduled.set(true);
+        if (ctx.key.isValid())
+            ctx.addInterestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void blockWrite() {
+        writeBlocked = true;
+        if (ctx.key.isValid())
+            ctx.removeInterestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void closeInbound() {
+        try {
+            engine.closeInbound();
+        } catch (SSLException e) {
+            // 对端没有发送close_notify就断开了连接
+        }
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] srcs, int offset, int length) {
+        for (int i = offset; i < offset + length; i++)
+            if (srcs[i].hasRemaining())
+                return true;
+        return false;
+    }
+
+    private static int copy(ByteBuffer src, ByteBuffer dst) {
+        int n = Math.min(src.remaining(), dst.remaining());
+        int limit = src.limit();
+        src.limit(src.position() + n);
+        dst.put(src);
+        src.limit(limit);
+        return n;
+    }
+
+    /**
+     * 尽力发送close_notify后归还缓存
+     */
+    @Override
+    public void close() throws IOException {
+        if (netOut == null)
+            return;
+        try {
+            if (channel.isOpen()) {
+                engine.closeOutbound();
+                if (flushNet()) {
+                    wrap(EMPTY, 0, 1);
+                    flushNet();
+                }
+            }
+        } catch (IOException e) {
+            // 连接已不可写
+        } finally {
+            ctx.bufferPool.recycle(netIn);
+            ctx.bufferPool.recycle(netOut);
+            ctx.bufferPool.recycle(appIn);
+            netIn = netOut = appIn = null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sjm.core.nio.core;
+
+/**
+ * 哈希时间轮：只能在selector线程上使用，添加和取消都是O(1)，每个tick只处理一个槽。
+ *
+ * 到期的任务先移到额外的一个槽中再依次执行，执行中的任务取消其他已到期的任务也是安全的。
+ */
+public class TimerWheel {
+    public static class Timeout {
+        private Runnable task;
+        private long rounds;
+        private int bucket = -1;
+        private Timeout prev, next;
+
+        public boolean isActive() {
+            return bucket >= 0;
+        }
+    }
+
+    private long tickMillis;
+    private Timeout[] buckets;
+    private int mask;
+    private int expired;
+    private long startTime;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param wheelSize 槽的个数，向上取整到2的幂
+     */
+    public TimerWheel(long tickMillis, int wheelSize, long now) {
+        if (tickMillis <= 0 || wheelSize <= 0)
+            throw new IllegalArgumentException();
+        int n = Integer.highestOneBit(wheelSize);
+        if (n < wheelSize)
+            n <<= 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new Timeout[n + 1];
+        this.mask = n - 1;
+        this.expired = n;
+        this.startTime = now;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Timeout schedule(Runnable task, long delayMillis, long now) {
+        Timeout t = new Timeout();
+        t.task = task;
+        reschedule(t, delayMillis, now);
+        return t;
+    }
+
+    /**
+     * 重新安排一个已经执行过或已取消的Timeout，避免创建新对象
+     */
+    public void reschedule(Timeout t, long delayMillis, long now) {
+        if (t.isActive())
+            cancel(t);
+        long deadline = now + Math.max(delayMillis, 0);
+        long ticks = (deadline - startTime + tickMillis - 1) / tickMillis;
+        long targetTick = Math.max(ticks, currentTick + 1);
+        t.rounds = (targetTick - currentTick - 1) / (mask + 1);
+        link(t, (int) (targetTick & mask));
+        size++;
+    }
+
+    private void link(Timeout t, int bucket) {
+        t.bucket = bucket;
+        t.prev = null;
+        t.next = buckets[bucket];
+        if (t.next != null)
+            t.next.prev = t;
+        buckets[bucket] = t;
+    }
+
+    private void unlink(Timeout t) {
+        if (t.prev != null)
+            t.prev.next = t.next;
+        else
+            buckets[t.bucket] = t.next;
+        if (t.next != null)
+            t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.bucket = -1;
+    }
+
+    public void cancel(Timeout t) {
+        if (!t.isActive())
+            return;
+        unlink(t);
+        size--;
+    }
+
+    /**
+     * 返回select可以阻塞的毫秒数，0表示没有定时任务，可以一直阻塞
+     */
+    public long getSelectTimeout(long now) {
+        if (size == 0)
+            return 0;
+        long nextTickTime = startTime + (currentTick + 1) * tickMillis;
+        return Math.max(nextTickTime - now, 1);
+    }
+
+    /**
+     * 推进到now，执行所有到期的任务
+     */
+    public void advance(long now) {
+        long targetTick = (now - startTime) / tickMillis;
+        if (size == 0) {
+            currentTick = Math.max(currentTick, targetTick);
+            return;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            Timeout t = buckets[(int) (currentTick & mask)];
+            while (t != null) {
+                Timeout next = t.next;
+                if (t.rounds <= 0) {
+                    unlink(t);
+                    link(t, expired);
+                } else {
+                    t.rounds--;
+                }
+                t = next;
+            }
+            while ((t = buckets[expired]) != null) {
+                cancel(t);
+                try {
+                    t.task.run();
+                } catch (Exception e) {
+                    NIOBase.logger.error(e.getMessage(), e);
+                }
+            }
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.sjm.core.nio.ext;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import com.sjm.core.util.core.BinaryJSON;
+import com.sjm.core.util.core.JSON;
+
+/**
+ * 报文类型： 用JSON.Deserializer解析出的对象
+ *
+ * 报文结构： 见{@link BinaryJSONEncoder}
+ *
+ * @author root
+ *
+ */
+public class BinaryJSONDecoder extends CompactByteArrayDecoder {
+    private JSON.Deserializer deserializer;
+
+    public BinaryJSONDecoder(JSON.Deserializer deserializer, int maxFrameSize) {
+        super(maxFrameSize);
+        this.deserializer = deserializer;
+    }
+
+    public BinaryJSONDecoder(Type type) {
+        this(JSON.Deserializers.forType(type), Integer.MAX_VALUE);
+    }
+
+    public BinaryJSONDecoder() {
+        this(JSON.Deserializers.forDefault, Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected Object toPacket(byte[] data) throws IOException {
+        try {
+            return BinaryJSON.parse(data, 0, data.length, deserializer);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid binary JSON frame", e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.sjm.core.nio.ext;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.util.core.BinaryJSON;
+
+/**
+ * 报文类型： 用BinaryJSON.BinarySerializer序列化的对象
+ *
+ * 报文结构： 见{@link CompactByteArrayEncoder}，body为{@link BinaryJSON}编码
+ *
+ * @author root
+ *
+ */
+public class BinaryJSONEncoder extends CompactByteArrayEncoder {
+
+    static class EncodeContext extends BatchContext {
+        public BinaryJSON.Output out = new BinaryJSON.Output();
+        public Object packet;// 空间不足时报文会再次传入，缓存上次的序列化结果
+        public byte[] data;
+    }
+
+    private BinaryJSON.BinarySerializer serializer;
+
+    public BinaryJSONEncoder(BinaryJSON.BinarySerializer serializer, int maxGather,
+            int batchThreshold) {
+        super(maxGather, batchThreshold);
+        this.serializer = serializer;
+    }
+
+    public BinaryJSONEncoder(Type type) {
+        this(BinaryJSON.BinarySerializers.forType(type), 64, 256);
+    }
+
+    public BinaryJSONEncoder() {
+        this(BinaryJSON.BinarySerializers.forAny, 64, 256);
+    }
+
+    @Override
+    protected GatherContext newGatherContext(ChannelContext ctx) {
+        return new EncodeContext();
+    }
+
+    @Override
+    protected int gather(ChannelContext ctx, Object packet, ByteBuffer[] buffers, int off)
+            throws IOException {
+        int count = super.gather(ctx, packet, buffers, off);
+        if (count != 0) {
+            EncodeContext ec = (EncodeContext) getGatherContext(ctx);
+            ec.packet = null;
+            ec.data = null;
+        }
+        return count;
+    }
+
+    @Override
+    protected byte[] toBytes(ChannelContext ctx, Object packet) throws IOException {
+        EncodeContext ec = (EncodeContext) getGatherContext(ctx);
+        if (ec.packet != packet) {
+            try {
+                serializer.serialize(packet, ec.out.clear());
+            } catch (RuntimeException e) {
+                throw new IOException("Serialize " + packet.getClass() + " failed", e);
+            }
+            ec.packet = packet;
+            ec.data = ec.out.toByteArray();
+        }
+        return ec.data;
+    }
+}
@@ -1,29 +1,79 @@
 package com.sjm.core.nio.ext;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import com.sjm.core.nio.core.ChannelContext;
 import com.sjm.core.nio.core.ChannelDecoder;
 
 /**
  * 报文类型： byte[]
- * 
+ *
  * 报文结构： [总长度，包括自己(固定4字节)] [body]
- * 
+ *
+ * 长度的最高位为压缩标志位，压缩报文的结构见{@link ByteArrayEncoder}；压缩报文边接收边解压，
+ * 不缓存压缩后的body。收到长度为0的压缩报文头表示对端支持压缩，在连接属性中记录{@link #PEER_INFLATE}。
+ *
  * @author root
  *
  */
 public class ByteArrayDecoder extends ChannelDecoder {
+    public static final int FLAG_COMPRESSED = 0x80000000;
+    public static final String PEER_INFLATE = "ByteArrayDecoder.peerInflate";
+
+    private static final int CHUNK_SIZE = 8192;
 
     static final int STATE_HEADER = 0;
     static final int STATE_BODY = 1;
+    static final int STATE_RAW_LENGTH = 2;
+    static final int STATE_COMPRESSED_BODY = 3;
 
-    static class DecodeContext {
+    static class DecodeContext implements Closeable {
         public int state;
         public byte[] header = new byte[4];
         public int headerIndex;
+        public int value;
         public byte[] data;
         public int dataIndex;
+        public int compressedLength;
+        public int compressedIndex;
+        public Inflater inflater;
+        public byte[] chunk;
+
+        @Override
+        public void close() throws IOException {
+            if (inflater != null)
+                inflater.end();
+        }
+    }
+
+    private int maxFrameSize;
+
+    private LongAdder compressedBytes = new LongAdder();// 收到的压缩报文字节数
+    private LongAdder inflatedBytes = new LongAdder();// 解压后的字节数
+    private LongAdder inflateNanos = new LongAdder();// 解压耗时
+
+    /**
+     * @param maxFrameSize 报文的最大长度，对压缩报文同时限制压缩前后的长度
+     */
+    public ByteArrayDecoder(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public ByteArrayDecoder() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public double getCompressionRatio() {
+        long inflated = inflatedBytes.sum();
+        return inflated == 0 ? 1 : (double) compressedBytes.sum() / inflated;
+    }
+
+    public long getInflateNanos() {
+        return inflateNanos.sum();
     }
 
     @Override
@@ -34,12 +84,26 @@ public class ByteArrayDecoder extends ChannelDecoder {
         int n = -1;
         switch (dc.state) {
             case STATE_HEADER: {
-                n = Math.min(ctx.readBuffer.remaining(), dc.header.length - dc.headerIndex);
-                ctx.readBuffer.get(dc.header, dc.headerIndex, n);
-                dc.headerIndex += n;
+                n = readInt(ctx, dc);
                 if (dc.headerIndex == dc.header.length) {
-                    dc.data = new byte[NIOTools.getInt(dc.header, 0)];
-                    dc.state = STATE_BODY;
+                    int value = dc.value;
+                    int length = value & ~FLAG_COMPRESSED;
+                    if (length > maxFrameSize)
+                        throw new IOException("Invalid frame length " + length);
+                    dc.headerIndex = 0;
+                    if ((value & FLAG_COMPRESSED) == 0) {
+                        dc.data = new byte[length];
+                        dc.state = STATE_BODY;
+                        if (length == 0)
+                            finish(ctx, dc);
+                    } else if (length == 0) {
+                        ctx.attributes.put(PEER_INFLATE, Boolean.TRUE);
+                    } else {
+                        if (length <= 4)
+                            throw new IOException("Invalid compressed frame length " + length);
+                        dc.compressedLength = length - 4;
+                        dc.state = STATE_RAW_LENGTH;
+                    }
                 }
                 break;
             }
@@ -47,16 +111,89 @@ public class ByteArrayDecoder extends ChannelDecoder {
                 n = Math.min(ctx.readBuffer.remaining(), dc.data.length - dc.dataIndex);
                 ctx.readBuffer.get(dc.data, dc.dataIndex, n);
                 dc.dataIndex += n;
-                if (dc.dataIndex == dc.data.length) {
-                    ctx.processer.process(ctx, dc.data);
+                if (dc.dataIndex == dc.data.length)
+                    finish(ctx, dc);
+                break;
+            }
+            case STATE_RAW_LENGTH: {
+                n = readInt(ctx, dc);
+                if (dc.headerIndex == dc.header.length) {
+                    int length = dc.value;
+                    if (length < 0 || length > maxFrameSize)
+                        throw new IOException("Invalid frame length " + length);
                     dc.headerIndex = 0;
-                    dc.dataIndex = 0;
-                    dc.data = null;
-                    dc.state = STATE_HEADER;
+                    dc.data = new byte[length];
+                    dc.compressedIndex = 0;
+                    if (dc.inflater == null) {
+                        dc.inflater = new Inflater();
+                        dc.chunk = new byte[CHUNK_SIZE];
+                    } else {
+                        dc.inflater.reset();
+                    }
+                    dc.state = STATE_COMPRESSED_BODY;
+                }
+                break;
+            }
+            case STATE_COMPRESSED_BODY: {
+                n = Math.min(ctx.readBuffer.remaining(), dc.chunk.length);
+                n = Math.min(n, dc.compressedLength - dc.compressedIndex);
+                ctx.readBuffer.get(dc.chunk, 0, n);
+                dc.compressedIndex += n;
+                inflate(dc, n);
+                if (dc.compressedIndex == dc.compressedLength) {
+                    if (!dc.inflater.finished() || dc.dataIndex != dc.data.length)
+                        throw new IOException("Corrupt compressed frame");
+                    compressedBytes.add(dc.compressedLength + 4);
+                    inflatedBytes.add(dc.data.length);
+                    finish(ctx, dc);
                 }
                 break;
             }
         }
         return n != 0;
     }
+
+    /**
+     * 读取4字节的整数到dc.value，readBuffer中有完整的4字节时直接getInt，否则先拼接到dc.header
+     */
+    private int readInt(ChannelContext ctx, DecodeContext dc) {
+        if (dc.headerIndex == 0 && ctx.readBuffer.remaining() >= 4) {
+            dc.value = ctx.readBuffer.getInt();
+            dc.headerIndex = 4;
+            return 4;
+        }
+        int n = Math.min(ctx.readBuffer.remaining(), dc.header.length - dc.headerIndex);
+        ctx.readBuffer.get(dc.header, dc.headerIndex, n);
+        dc.headerIndex += n;
+        if (dc.headerIndex == dc.header.length)
+            dc.value = NIOTools.getInt(dc.header, 0);
+        return n;
+    }
+
+    private void inflate(DecodeContext dc, int n) throws IOException {
+        long start = System.nanoTime();
+        Inflater inflater = dc.inflater;
+        inflater.setInput(dc.chunk, 0, n);
+        try {
+            while (!inflater.needsInput() && !inflater.finished()) {
+                int len = inflater.inflate(dc.data, dc.dataIndex, dc.data.length - dc.dataIndex);
+                dc.dataIndex += len;
+                if (len == 0 && !inflater.needsInput() && !inflater.finished())
+                    throw new IOException(dc.dataIndex == dc.data.length
+                            ? "Compressed frame longer than " + dc.data.length
+                            : "Corrupt compressed frame");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        inflateNanos.add(System.nanoTime() - start);
+    }
+
+    private void finish(ChannelContext ctx, DecodeContext dc) {
+        byte[] data = dc.data;
+        dc.dataIndex = 0;
+        dc.data = null;
+        dc.state = STATE_HEADER;
+        ctx.processer.process(ctx, data);
+    }
 }
@@ -1,67 +1,155 @@
 package com.sjm.core.nio.ext;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
 
 import com.sjm.core.nio.core.ChannelContext;
-import com.sjm.core.nio.core.ChannelEncoder;
+import com.sjm.core.nio.core.GatheringEncoder;
 
 
 /**
  * 报文类型： byte[]
- * 
+ *
  * 报文结构： [总长度，包括自己(固定4字节)] [body]
- * 
+ *
+ * 报文头分配在writeBuffer中，body拷贝到writeBuffer或池中申请的直接缓冲区，多个报文聚集后一次写出；
+ * 超过maxCopySize的body分段经writeBuffer写出
+ *
+ * 开启压缩后，连接上的第一个报文前先发送一个压缩标志位为1、长度为0的报文头，通知对端本端支持压缩；
+ * 收到对端的通知后，长度不小于minCompressSize的报文用deflate压缩，报文结构为：
+ * [压缩标志位|长度(固定4字节)] [原始长度(固定4字节)] [压缩后的body]，压缩后没有变小的报文按原样发送
+ *
  * @author root
  *
  */
-public class ByteArrayEncoder extends ChannelEncoder {
+public class ByteArrayEncoder extends GatheringEncoder {
+    private static final int CHUNK_SIZE = 8192;
+
+    static class CompressContext extends GatherContext {
+        public Deflater deflater;
+        public byte[] chunk;
+        public boolean advertised;
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (deflater != null)
+                deflater.end();
+        }
+    }
+
+    private int minCompressSize;
+    private int level;
+
+    private LongAdder rawBytes = new LongAdder();// 参与压缩的原始字节数
+    private LongAdder compressedBytes = new LongAdder();// 压缩后的字节数
+    private LongAdder compressNanos = new LongAdder();// 压缩耗时
+
+    public ByteArrayEncoder(int maxGather) {
+        super(maxGather);
+    }
+
+    public ByteArrayEncoder() {}
+
+    /**
+     * 开启压缩，对端需要使用同样支持压缩的ByteArrayDecoder
+     *
+     * @param minCompressSize 小于该长度的报文不压缩
+     * @param level Deflater的压缩级别
+     */
+    public ByteArrayEncoder setCompression(int minCompressSize, int level) {
+        if (minCompressSize <= 0)
+            throw new IllegalArgumentException("minCompressSize=" + minCompressSize);
+        this.minCompressSize = minCompressSize;
+        this.level = level;
+        return this;
+    }
 
-    static final int STATE_HEADER = 0;
-    static final int STATE_BODY = 1;
+    public double getCompressionRatio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1 : (double) compressedBytes.sum() / raw;
+    }
 
-    static class EncodeContext {
-        public int state;
-        public byte[] header = new byte[4];
-        public int headerIndex;
-        public byte[] data;
-        public int dataIndex;
+    public long getCompressNanos() {
+        return compressNanos.sum();
     }
 
     @Override
-    protected boolean encode(ChannelContext ctx) throws IOException {
-        EncodeContext ec = (EncodeContext) ctx.encodeCotext;
-        if (ec == null)
-            ctx.encodeCotext = ec = new EncodeContext();
-        int n = -1;
-        switch (ec.state) {
-            case STATE_HEADER: {
-                if (ec.headerIndex == 0) {
-                    if (ctx.writeQueue.isEmpty())
-                        return false;
-                    ec.data = (byte[]) ctx.writeQueue.peek();
-                    NIOTools.putInt(ec.header, 0, ec.data.length);
-                }
-                n = Math.min(ctx.writeBuffer.remaining(), ec.header.length - ec.headerIndex);
-                ctx.writeBuffer.put(ec.header, ec.headerIndex, n);
-                ec.headerIndex += n;
-                if (ec.headerIndex == ec.header.length) {
-                    ec.state = STATE_BODY;
-                }
-                break;
+    protected GatherContext newGatherContext(ChannelContext ctx) {
+        return minCompressSize > 0 ? new CompressContext() : super.newGatherContext(ctx);
+    }
+
+    @Override
+    protected int gather(ChannelContext ctx, Object packet, ByteBuffer[] buffers, int off)
+            throws IOException {
+        if (buffers.length - off < 2 || ctx.writeBuffer.remaining() < 8)
+            return 0;
+        byte[] data = (byte[]) packet;
+        ByteBuffer header = ctx.writeBuffer.slice();
+        if (minCompressSize > 0) {
+            CompressContext cc = (CompressContext) getGatherContext(ctx);
+            if (!cc.advertised) {
+                if (buffers.length - off < 3 || ctx.writeBuffer.remaining() < 12)
+                    return 0;
+                cc.advertised = true;
+                header.limit(4);
+                header.putInt(0, ByteArrayDecoder.FLAG_COMPRESSED);
+                buffers[off] = header;
+                ctx.writeBuffer.position(ctx.writeBuffer.position() + 4);
+                return 1 + gather(ctx, packet, buffers, off + 1);
             }
-            case STATE_BODY: {
-                n = Math.min(ctx.writeBuffer.remaining(), ec.data.length - ec.dataIndex);
-                ctx.writeBuffer.put(ec.data, ec.dataIndex, n);
-                ec.dataIndex += n;
-                if (ec.dataIndex == ec.data.length) {
-                    ctx.writeQueue.poll();
-                    ec.headerIndex = 0;
-                    ec.dataIndex = 0;
-                    ec.state = STATE_HEADER;
+            if (data.length >= minCompressSize
+                    && ctx.attributes.get(ByteArrayDecoder.PEER_INFLATE) == Boolean.TRUE) {
+                ByteBuffer body = compress(ctx, cc, data);
+                if (body != null) {
+                    header.limit(4);
+                    header.putInt(0, ByteArrayDecoder.FLAG_COMPRESSED | body.remaining());
+                    ctx.writeBuffer.position(ctx.writeBuffer.position() + 4);
+                    buffers[off] = header;
+                    buffers[off + 1] = body;
+                    return 2;
                 }
+            }
+        }
+        header.limit(4);
+        header.putInt(0, data.length);
+        ctx.writeBuffer.position(ctx.writeBuffer.position() + 4);
+        buffers[off] = header;
+        buffers[off + 1] = copyDirect(ctx, data);
+        return 2;
+    }
+
+    /**
+     * 分块压缩到池中申请的缓冲区，压缩后没有变小或超过maxCopySize时返回null
+     */
+    private ByteBuffer compress(ChannelContext ctx, CompressContext cc, byte[] data) {
+        long start = System.nanoTime();
+        if (cc.deflater == null) {
+            cc.deflater = new Deflater(level);
+            cc.chunk = new byte[CHUNK_SIZE];
+        }
+        Deflater deflater = cc.deflater;
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteBuffer body = applyPooled(ctx, Math.min(data.length, maxCopySize));
+        body.putInt(data.length);
+        while (!deflater.finished()) {
+            int n = deflater.deflate(cc.chunk);
+            if (n > body.remaining() || body.position() + n >= data.length) {
+                body = null;
                 break;
             }
+            body.put(cc.chunk, 0, n);
+        }
+        if (body != null) {
+            body.flip();
+            rawBytes.add(data.length);
+            compressedBytes.add(body.remaining());
         }
-        return n != 0;
+        compressNanos.add(System.nanoTime() - start);
+        return body;
     }
 }
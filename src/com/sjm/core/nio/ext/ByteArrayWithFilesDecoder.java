@@ -3,6 +3,7 @@ package com.sjm.core.nio.ext;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
@@ -22,21 +23,29 @@ import com.sjm.core.util.core.IOUtil;
  * [datas.size(),4bytes] [files.size(),4bytes] [datas[n].length,4bytes]...
  * [files[n].length(),8bytes]... [datas[n]]... [files[n]]...
  * 
+ * 紧凑模式下报文头中的个数和长度都是varint：
+ * 
+ * [datas.size()] [files.size()] [datas[n].length]... [files[n].length()]... [datas[n]]...
+ * [files[n]]...
+ * 
  * @author root
  *
  */
 public class ByteArrayWithFilesDecoder extends ChannelDecoder {
 
-    static final int STATE_DATAS_FILES_LENGTH_SIZE = 0;
+    static final int STATE_DATAS_LENGTH_SIZE = 0;
     static final int STATE_DATAS_LENGTH = 1;
     static final int STATE_FILES_LENGTH = 2;
     static final int STATE_DATAS = 3;
     static final int STATE_FILES = 4;
+    static final int STATE_FILES_LENGTH_SIZE = 5;
 
     static class DecodeContext implements Closeable {
         public int state;
         public byte[] buffer = new byte[8];
         public int bufferIndex;
+        public NIOTools.VarLongReader varLong;
+        public long number;
         public int[] datasSizes;
         public long[] filesSizes;
         public int index;
@@ -54,25 +63,42 @@ public class ByteArrayWithFilesDecoder extends ChannelDecoder {
         }
     }
 
+    private boolean compact;
+
+    /**
+     * @param compact 报文头使用varint
+     */
+    public ByteArrayWithFilesDecoder(boolean compact) {
+        this.compact = compact;
+    }
+
+    public ByteArrayWithFilesDecoder() {
+        this(false);
+    }
+
     @Override
     protected boolean decode(ChannelContext ctx) throws IOException {
         DecodeContext dc = getDecodeContext(ctx);
         int n = -1;
         switch (dc.state) {
-            case STATE_DATAS_FILES_LENGTH_SIZE: {
-                n = readBuffer(ctx, dc, 8);
-                if (dc.bufferIndex == 8) {
-                    dc.bufferIndex = 0;
-                    int datasLengthSize = NIOTools.getInt(dc.buffer, 0);
-                    if (datasLengthSize % 4 != 0)
-                        throw new IOException();
-                    int filesLengthSize = NIOTools.getInt(dc.buffer, 4);
-                    if (filesLengthSize % 8 != 0)
-                        throw new IOException();
-                    dc.datasSizes = new int[datasLengthSize / 4];
-                    dc.datas = new ArrayList<>(dc.datasSizes.length);
-                    dc.filesSizes = new long[filesLengthSize / 8];
-                    dc.files = new ArrayList<>(dc.filesSizes.length);
+            case STATE_DATAS_LENGTH_SIZE: {
+                n = readNumber(ctx, dc, 4);
+                if (n < 0) {
+                    n = -n;
+                    int count = toCount(dc.number, 4);
+                    dc.datasSizes = new int[count];
+                    dc.datas = new ArrayList<>(count);
+                    dc.state = STATE_FILES_LENGTH_SIZE;
+                }
+                break;
+            }
+            case STATE_FILES_LENGTH_SIZE: {
+                n = readNumber(ctx, dc, 4);
+                if (n < 0) {
+                    n = -n;
+                    int count = toCount(dc.number, 8);
+                    dc.filesSizes = new long[count];
+                    dc.files = new ArrayList<>(count);
                     dc.index = 0;
                     dc.state = STATE_DATAS_LENGTH;
                 }
@@ -84,10 +110,12 @@ public class ByteArrayWithFilesDecoder extends ChannelDecoder {
                     dc.state = STATE_FILES_LENGTH;
                     break;
                 }
-                n = readBuffer(ctx, dc, 4);
-                if (dc.bufferIndex == 4) {
-                    dc.bufferIndex = 0;
-                    dc.datasSizes[dc.index++] = NIOTools.getInt(dc.buffer, 0);
+                n = readNumber(ctx, dc, 4);
+                if (n < 0) {
+                    n = -n;
+                    if (dc.number < 0 || dc.number > Integer.MAX_VALUE)
+                        throw new IOException("Invalid data length " + dc.number);
+                    dc.datasSizes[dc.index++] = (int) dc.number;
                 }
                 break;
             }
@@ -98,9 +126,12 @@ public class ByteArrayWithFilesDecoder extends ChannelDecoder {
                     dc.state = STATE_DATAS;
                     break;
                 }
-                n = readBuffer(ctx, dc, 8);
-                if (dc.bufferIndex == 8) {
-                    dc.filesSizes[dc.index++] = NIOTools.getLong(dc.buffer, 0);
+                n = readNumber(ctx, dc, 8);
+                if (n < 0) {
+                    n = -n;
+                    if (dc.number < 0)
+                        throw new IOException("Invalid file length " + dc.number);
+                    dc.filesSizes[dc.index++] = dc.number;
                 }
                 break;
             }
@@ -116,6 +147,10 @@ public class ByteArrayWithFilesDecoder extends ChannelDecoder {
                     dc.position = 0;
                 }
                 byte[] currentData = dc.datas.get(dc.index);
+                if (currentSize == 0) {
+                    dc.index++;
+                    break;
+                }
                 n = Math.min(ctx.readBuffer.remaining(), currentSize - (int) dc.position);
                 ctx.readBuffer.get(currentData, (int) dc.position, n);
                 dc.position += n;
@@ -130,8 +165,13 @@ public class ByteArrayWithFilesDecoder extends ChannelDecoder {
                     break;
                 }
                 openFile(dc);
+                long remaining = dc.filesSizes[dc.index] - dc.position;
+                if (remaining == 0) {
+                    finishCurrent(dc, 0);
+                    break;
+                }
                 int oldLimit = ctx.readBuffer.limit();
-                n = (int) Math.min(ctx.readBuffer.remaining(), dc.filesSizes[dc.index]);
+                n = (int) Math.min(ctx.readBuffer.remaining(), remaining);
                 ctx.readBuffer.limit(ctx.readBuffer.position() + n);
                 if (dc.fc.write(ctx.readBuffer) != n)
                     throw new IOException();
@@ -143,19 +183,66 @@ public class ByteArrayWithFilesDecoder extends ChannelDecoder {
         return n != 0;
     }
 
+    /**
+     * 读取报文头中的一个数到dc.number，固定长度的数在readBuffer中完整时直接getInt/getLong
+     * 
+     * @return 消耗的字节数，读取完整时返回其相反数
+     */
+    private int readNumber(ChannelContext ctx, DecodeContext dc, int size) throws IOException {
+        ByteBuffer readBuffer = ctx.readBuffer;
+        if (compact) {
+            if (dc.varLong == null)
+                dc.varLong = new NIOTools.VarLongReader();
+            int position = readBuffer.position();
+            boolean done = dc.varLong.read(readBuffer);
+            int n = readBuffer.position() - position;
+            if (!done)
+                return n;
+            dc.number = dc.varLong.take();
+            return -n;
+        }
+        if (dc.bufferIndex == 0 && readBuffer.remaining() >= size) {
+            dc.number = size == 4 ? readBuffer.getInt() : readBuffer.getLong();
+            return -size;
+        }
+        int n = Math.min(readBuffer.remaining(), size - dc.bufferIndex);
+        readBuffer.get(dc.buffer, dc.bufferIndex, n);
+        dc.bufferIndex += n;
+        if (dc.bufferIndex != size)
+            return n;
+        dc.bufferIndex = 0;
+        dc.number = size == 4 ? NIOTools.getInt(dc.buffer, 0) : NIOTools.getLong(dc.buffer, 0);
+        return -n;
+    }
+
+    /**
+     * 非紧凑模式下报文头中记录的是长度数组占用的字节数
+     */
+    private int toCount(long number, int unit) throws IOException {
+        if (!compact) {
+            if (number < 0 || number % unit != 0)
+                throw new IOException("Invalid length size " + number);
+            number /= unit;
+        }
+        if (number < 0 || number > Integer.MAX_VALUE)
+            throw new IOException("Invalid count " + number);
+        return (int) number;
+    }
+
     @Override
     protected int beforeRead(ChannelContext ctx) throws IOException {
         DecodeContext dc = getDecodeContext(ctx);
-        if (dc.state == STATE_FILES) {
+        if (dc.state == STATE_FILES && ctx.isZeroCopySupported()) {
             while (true) {
                 if (dc.index == dc.filesSizes.length) {
                     finish(ctx, dc);
                     break;
                 }
                 openFile(dc);
-                long n = dc.fc.transferFrom(ctx.channel, dc.position,
-                        dc.filesSizes[dc.index] - dc.position);
-                if (n <= 0) {
+                long remaining = dc.filesSizes[dc.index] - dc.position;
+                long n = remaining == 0 ? 0
+                        : dc.fc.transferFrom(ctx.channel, dc.position, remaining);
+                if (n <= 0 && remaining != 0) {
                     return (int) n;
                 }
                 finishCurrent(dc, n);
@@ -171,19 +258,11 @@ public class ByteArrayWithFilesDecoder extends ChannelDecoder {
         return dc;
     }
 
-    private int readBuffer(ChannelContext ctx, DecodeContext dc, int count) {
-        int n = Math.min(ctx.readBuffer.remaining(), count - dc.bufferIndex);
-        ctx.readBuffer.get(dc.buffer, dc.bufferIndex, n);
-        dc.bufferIndex += n;
-        return n;
-    }
-
     private void finish(ChannelContext ctx, DecodeContext dc) throws IOException {
         ctx.processer.process(ctx, new ByteArrayWithFiles(dc.datas, dc.files));
         dc.datas = null;
         dc.files = null;
-        dc.bufferIndex = 0;
-        dc.state = STATE_DATAS_FILES_LENGTH_SIZE;
+        dc.state = STATE_DATAS_LENGTH_SIZE;
     }
 
     private void openFile(DecodeContext dc) throws IOException {
@@ -18,6 +18,11 @@ import com.sjm.core.util.core.IOUtil;
  * [datas.size(),4bytes] [files.size(),4bytes] [datas[n].length,4bytes]...
  * [files[n].length(),8bytes]... [datas[n]]... [files[n]]...
  * 
+ * 紧凑模式下报文头中的个数和长度都是varint：
+ * 
+ * [datas.size()] [files.size()] [datas[n].length]... [files[n].length()]... [datas[n]]...
+ * [files[n]]...
+ * 
  * @author root
  *
  */
@@ -31,8 +36,9 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
 
     static class EncodeContext implements Closeable {
         public int state;
-        public byte[] buffer = new byte[8];
+        public byte[] buffer = new byte[10];
         public int bufferIndex;
+        public int bufferLength;
         public long[] filesSizes;
         public int index;
         public long position;
@@ -46,6 +52,19 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
         }
     }
 
+    private boolean compact;
+
+    /**
+     * @param compact 报文头使用varint
+     */
+    public ByteArrayWithFilesEncoder(boolean compact) {
+        this.compact = compact;
+    }
+
+    public ByteArrayWithFilesEncoder() {
+        this(false);
+    }
+
     @Override
     protected boolean encode(ChannelContext ctx) throws IOException {
         EncodeContext ec = getEncodeContext(ctx);
@@ -62,11 +81,18 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
                     for (int i = 0; i < ec.filesSizes.length; i++) {
                         ec.filesSizes[i] = ec.packet.files.get(i).length();
                     }
-                    NIOTools.putInt(ec.buffer, 0, ec.packet.datas.size() * 4);
-                    NIOTools.putInt(ec.buffer, 4, ec.packet.files.size() * 8);
+                    if (compact) {
+                        int off = NIOTools.putVarLong(ec.buffer, 0, ec.packet.datas.size());
+                        ec.bufferLength =
+                                NIOTools.putVarLong(ec.buffer, off, ec.packet.files.size());
+                    } else {
+                        NIOTools.putInt(ec.buffer, 0, ec.packet.datas.size() * 4);
+                        NIOTools.putInt(ec.buffer, 4, ec.packet.files.size() * 8);
+                        ec.bufferLength = 8;
+                    }
                 }
-                n = writeBuffer(ctx, ec, 8);
-                if (ec.bufferIndex == 8) {
+                n = writeBuffer(ctx, ec);
+                if (ec.bufferIndex == ec.bufferLength) {
                     ec.needInit = true;
                     ec.index = 0;
                     ec.state = STATE_DATAS_LENGTH;
@@ -82,10 +108,10 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
                 if (ec.needInit) {
                     ec.needInit = false;
                     ec.bufferIndex = 0;
-                    NIOTools.putInt(ec.buffer, 0, ec.packet.datas.get(ec.index).length);
+                    putNumber(ec, ec.packet.datas.get(ec.index).length, 4);
                 }
-                n = writeBuffer(ctx, ec, 4);
-                if (ec.bufferIndex == 4) {
+                n = writeBuffer(ctx, ec);
+                if (ec.bufferIndex == ec.bufferLength) {
                     ec.index++;
                     ec.needInit = true;
                 }
@@ -101,10 +127,10 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
                 if (ec.needInit) {
                     ec.needInit = false;
                     ec.bufferIndex = 0;
-                    NIOTools.putLong(ec.buffer, 0, ec.filesSizes[ec.index]);
+                    putNumber(ec, ec.filesSizes[ec.index], 8);
                 }
-                n = writeBuffer(ctx, ec, 8);
-                if (ec.bufferIndex == 8) {
+                n = writeBuffer(ctx, ec);
+                if (ec.bufferIndex == ec.bufferLength) {
                     ec.index++;
                     ec.needInit = true;
                 }
@@ -131,6 +157,11 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
                     finish(ctx, ec);
                     break;
                 }
+                if (ctx.isZeroCopySupported()) {
+                    // 先把writeBuffer中的内容写出，文件交给beforeWrite通过transferTo发送
+                    n = 0;
+                    break;
+                }
                 openFile(ec);
                 n = ec.fc.read(ctx.writeBuffer);
                 if (n == -1)
@@ -145,16 +176,16 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
     @Override
     protected int beforeWrite(ChannelContext ctx) throws IOException {
         EncodeContext ec = getEncodeContext(ctx);
-        if (ec.state == STATE_FILES) {
+        if (ec.state == STATE_FILES && ctx.isZeroCopySupported()) {
             while (true) {
                 if (ec.index == ec.filesSizes.length) {
                     finish(ctx, ec);
                     break;
                 }
                 openFile(ec);
-                long n = ec.fc.transferTo(ec.position, ec.filesSizes[ec.index] - ec.position,
-                        ctx.channel);
-                if (n <= 0) {
+                long remaining = ec.filesSizes[ec.index] - ec.position;
+                long n = remaining == 0 ? 0 : ctx.transferFileTo(ec.fc, ec.position, remaining);
+                if (n <= 0 && remaining != 0) {
                     return (int) n;
                 }
                 finishCurrent(ec, n);
@@ -170,8 +201,20 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
         return ec;
     }
 
-    private int writeBuffer(ChannelContext ctx, EncodeContext ec, int count) {
-        int n = Math.min(ctx.writeBuffer.remaining(), count - ec.bufferIndex);
+    private void putNumber(EncodeContext ec, long number, int size) {
+        if (compact) {
+            ec.bufferLength = NIOTools.putVarLong(ec.buffer, 0, number);
+            return;
+        }
+        if (size == 4)
+            NIOTools.putInt(ec.buffer, 0, (int) number);
+        else
+            NIOTools.putLong(ec.buffer, 0, number);
+        ec.bufferLength = size;
+    }
+
+    private int writeBuffer(ChannelContext ctx, EncodeContext ec) {
+        int n = Math.min(ctx.writeBuffer.remaining(), ec.bufferLength - ec.bufferIndex);
         ctx.writeBuffer.put(ec.buffer, ec.bufferIndex, n);
         ec.bufferIndex += n;
         return n;
@@ -179,7 +222,7 @@ public class ByteArrayWithFilesEncoder extends ChannelEncoder {
 
     private void finish(ChannelContext ctx, EncodeContext ec) throws IOException {
         ec.packet = null;
-        ctx.writeQueue.poll();
+        ctx.pollWrite();
         ec.state = STATE_DATAS_FILES_LENGTH_SIZE;
     }
 
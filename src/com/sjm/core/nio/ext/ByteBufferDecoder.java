@@ -0,0 +1,143 @@
+package com.sjm.core.nio.ext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.ChannelDecoder;
+
+/**
+ * 报文类型： ByteBuffer（只读，报文内容为position到limit之间的字节）
+ *
+ * 报文结构： 与ByteArrayDecoder相同，[body长度(固定4字节)] [body]
+ *
+ * 完整落在readBuffer中的报文直接以readBuffer的只读视图交付；跨越多次读取的报文拼接到从ByteBufferPool申请的缓冲区中，
+ * 两者都只在onRead执行期间有效，onRead返回后即被复用或归还。配置了业务线程池时报文会在onRead之前离开selector线程，
+ * 此时改为拷贝到新分配的堆缓冲区。
+ *
+ * @author root
+ *
+ */
+public class ByteBufferDecoder extends ChannelDecoder {
+
+    static final int STATE_HEADER = 0;
+    static final int STATE_BODY = 1;
+
+    static class DecodeContext implements Closeable {
+        public ChannelContext ctx;
+        public int state;
+        public byte[] header = new byte[4];
+        public int headerIndex;
+        public ByteBuffer body;
+        public boolean pooled;
+        public ByteBuffer view;
+        public ByteBuffer viewSource;
+
+        @Override
+        public void close() throws IOException {
+            if (pooled)
+                ctx.bufferPool.recycle(body);
+            body = null;
+        }
+    }
+
+    private int maxFrameSize;
+
+    public ByteBufferDecoder(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public ByteBufferDecoder() {
+        this(16 * 1024 * 1024);
+    }
+
+    @Override
+    protected boolean decode(ChannelContext ctx) throws IOException {
+        DecodeContext dc = getDecodeContext(ctx);
+        ByteBuffer readBuffer = ctx.readBuffer;
+        switch (dc.state) {
+            case STATE_HEADER: {
+                if (!readBuffer.hasRemaining())
+                    return false;
+                int length;
+                if (dc.headerIndex == 0 && readBuffer.remaining() >= 4) {
+                    length = readBuffer.getInt();
+                } else {
+                    int n = Math.min(readBuffer.remaining(), 4 - dc.headerIndex);
+                    readBuffer.get(dc.header, dc.headerIndex, n);
+                    dc.headerIndex += n;
+                    if (dc.headerIndex != 4)
+                        return true;
+                    dc.headerIndex = 0;
+                    length = NIOTools.getInt(dc.header, 0);
+                }
+                if (length < 0 || length > maxFrameSize)
+                    throw new IOException("Invalid frame length " + length);
+                if (ctx.inbox != null) {
+                    dc.body = ByteBuffer.allocate(length);
+                    dc.pooled = false;
+                } else if (readBuffer.remaining() >= length) {
+                    int position = readBuffer.position();
+                    readBuffer.position(position + length);
+                    ctx.processer.process(ctx, view(dc, readBuffer, position, length));
+                    return true;
+                } else {
+                    dc.body = ctx.bufferPool.apply(length, dc);
+                    dc.body.limit(length);
+                    dc.pooled = true;
+                }
+                dc.state = STATE_BODY;
+                return true;
+            }
+            case STATE_BODY: {
+                int n = Math.min(readBuffer.remaining(), dc.body.remaining());
+                if (n == 0 && dc.body.hasRemaining())
+                    return false;
+                int oldLimit = readBuffer.limit();
+                readBuffer.limit(readBuffer.position() + n);
+                dc.body.put(readBuffer);
+                readBuffer.limit(oldLimit);
+                if (!dc.body.hasRemaining()) {
+                    ByteBuffer body = dc.body;
+                    boolean pooled = dc.pooled;
+                    dc.body = null;
+                    dc.pooled = false;
+                    dc.state = STATE_HEADER;
+                    body.flip();
+                    try {
+                        ctx.processer.process(ctx, pooled ? body.asReadOnlyBuffer() : body);
+                    } finally {
+                        if (pooled)
+                            ctx.bufferPool.recycle(body);
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 复用同一个只读视图，避免每个报文创建新的ByteBuffer对象
+     */
+    private ByteBuffer view(DecodeContext dc, ByteBuffer source, int position, int length) {
+        if (dc.viewSource != source) {
+            dc.view = source.asReadOnlyBuffer();
+            dc.viewSource = source;
+        }
+        dc.view.clear();
+        dc.view.position(position);
+        dc.view.limit(position + length);
+        return dc.view;
+    }
+
+    private DecodeContext getDecodeContext(ChannelContext ctx) {
+        DecodeContext dc = (DecodeContext) ctx.decodeCotext;
+        if (dc == null) {
+            ctx.decodeCotext = dc = new DecodeContext();
+            dc.ctx = ctx;
+        }
+        return dc;
+    }
+}
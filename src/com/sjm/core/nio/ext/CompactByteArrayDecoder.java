@@ -0,0 +1,138 @@
+package com.sjm.core.nio.ext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.ChannelDecoder;
+
+/**
+ * 报文类型： byte[]
+ *
+ * 报文结构： 见{@link CompactByteArrayEncoder}，批量报文拆开后逐个交付
+ *
+ * @author root
+ *
+ */
+public class CompactByteArrayDecoder extends ChannelDecoder {
+
+    static final int STATE_HEADER = 0;
+    static final int STATE_BODY = 1;
+    static final int STATE_BATCH_COUNT = 2;
+    static final int STATE_ITEM_LENGTH = 3;
+    static final int STATE_ITEM = 4;
+
+    static class DecodeContext {
+        public int state;
+        public NIOTools.VarLongReader varLong = new NIOTools.VarLongReader();
+        public byte[] data;
+        public int dataIndex;
+        public int batchRemaining;// 批量报文中还没有读取的字节数
+        public int itemCount;
+    }
+
+    private int maxFrameSize;
+
+    public CompactByteArrayDecoder(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public CompactByteArrayDecoder() {
+        this(Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected boolean decode(ChannelContext ctx) throws IOException {
+        DecodeContext dc = (DecodeContext) ctx.decodeCotext;
+        if (dc == null)
+            ctx.decodeCotext = dc = new DecodeContext();
+        ByteBuffer readBuffer = ctx.readBuffer;
+        if (!readBuffer.hasRemaining())
+            return false;
+        switch (dc.state) {
+            case STATE_HEADER: {
+                if (!dc.varLong.read(readBuffer))
+                    return false;
+                long header = dc.varLong.take();
+                long length = header >>> 1;
+                if (length > maxFrameSize)
+                    throw new IOException("Invalid frame length " + length);
+                if ((header & 1) != 0) {
+                    dc.batchRemaining = (int) length;
+                    dc.state = STATE_BATCH_COUNT;
+                } else {
+                    dc.data = new byte[(int) length];
+                    dc.state = STATE_BODY;
+                    if (length == 0)
+                        finishItem(ctx, dc);
+                }
+                break;
+            }
+            case STATE_BODY:
+            case STATE_ITEM: {
+                int n = Math.min(readBuffer.remaining(), dc.data.length - dc.dataIndex);
+                readBuffer.get(dc.data, dc.dataIndex, n);
+                dc.dataIndex += n;
+                if (dc.state == STATE_ITEM)
+                    dc.batchRemaining -= n;
+                if (dc.dataIndex == dc.data.length)
+                    finishItem(ctx, dc);
+                break;
+            }
+            case STATE_BATCH_COUNT: {
+                int position = readBuffer.position();
+                boolean done = dc.varLong.read(readBuffer);
+                dc.batchRemaining -= readBuffer.position() - position;
+                if (!done)
+                    break;
+                long count = dc.varLong.take();
+                if (count <= 0 || count > dc.batchRemaining)
+                    throw new IOException("Invalid batch count " + count);
+                dc.itemCount = (int) count;
+                dc.state = STATE_ITEM_LENGTH;
+                break;
+            }
+            case STATE_ITEM_LENGTH: {
+                int position = readBuffer.position();
+                boolean done = dc.varLong.read(readBuffer);
+                dc.batchRemaining -= readBuffer.position() - position;
+                if (!done)
+                    break;
+                long length = dc.varLong.take();
+                if (length > dc.batchRemaining || dc.batchRemaining < 0)
+                    throw new IOException("Invalid batch item length " + length);
+                dc.itemCount--;
+                dc.data = new byte[(int) length];
+                dc.state = STATE_ITEM;
+                if (length == 0)
+                    finishItem(ctx, dc);
+                break;
+            }
+        }
+        return true;
+    }
+
+    private void finishItem(ChannelContext ctx, DecodeContext dc) throws IOException {
+        byte[] data = dc.data;
+        boolean inBatch = dc.state == STATE_ITEM;
+        dc.data = null;
+        dc.dataIndex = 0;
+        if (!inBatch) {
+            dc.state = STATE_HEADER;
+        } else if (dc.itemCount > 0) {
+            dc.state = STATE_ITEM_LENGTH;
+        } else {
+            if (dc.batchRemaining != 0)
+                throw new IOException("Invalid batch length, " + dc.batchRemaining + " bytes left");
+            dc.state = STATE_HEADER;
+        }
+        ctx.processer.process(ctx, toPacket(data));
+    }
+
+    /**
+     * 子类可以把body转换为其它类型的报文
+     */
+    protected Object toPacket(byte[] data) throws IOException {
+        return data;
+    }
+}
@@ -0,0 +1,119 @@
+package com.sjm.core.nio.ext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.GatheringEncoder;
+
+/**
+ * 报文类型： byte[]
+ *
+ * 报文结构（长度都是varint）：
+ *
+ * 单个报文： [body长度 << 1] [body]
+ *
+ * 批量报文： [(批量body长度 << 1) | 1] [报文个数] [body[n]长度] [body[n]]...
+ *
+ * 不超过batchThreshold的小报文拷贝到writeBuffer中，同一轮聚集里相邻的小报文合并为一个批量报文，
+ * 大报文的body拷贝到池中申请的直接缓冲区聚集写出。
+ *
+ * @author root
+ *
+ */
+public class CompactByteArrayEncoder extends GatheringEncoder {
+    private static final int RESERVED = 15;// 小报文body前预留的空间：报文头、报文个数、第一个body的长度
+
+    static class BatchContext extends GatherContext {
+        public ByteBuffer frame;// 可以继续追加小报文的帧，是writeBuffer的视图
+        public int firstStart;// 第一个body在writeBuffer中的位置
+        public int firstLength;
+        public int count;
+    }
+
+    private int batchThreshold;
+
+    /**
+     * @param batchThreshold 不超过该长度的报文可以合并为批量报文
+     */
+    public CompactByteArrayEncoder(int maxGather, int batchThreshold) {
+        super(maxGather);
+        this.batchThreshold = batchThreshold;
+    }
+
+    public CompactByteArrayEncoder() {
+        this(64, 256);
+    }
+
+    @Override
+    protected GatherContext newGatherContext(ChannelContext ctx) {
+        return new BatchContext();
+    }
+
+    @Override
+    protected int gather(ChannelContext ctx, Object packet, ByteBuffer[] buffers, int off)
+            throws IOException {
+        byte[] data = toBytes(ctx, packet);
+        ByteBuffer writeBuffer = ctx.writeBuffer;
+        if (data.length <= batchThreshold) {
+            BatchContext bc = (BatchContext) getGatherContext(ctx);
+            if (off > 0 && bc.frame != null && bc.frame == buffers[off - 1]) {
+                int extra = bc.count == 1 ? NIOTools.varLongSize(bc.firstLength) : 0;
+                if (writeBuffer.remaining() < 5 + data.length + extra)
+                    return 0;
+                append(writeBuffer, bc, data);
+                return MERGED;
+            }
+            if (buffers.length - off >= 1 && writeBuffer.remaining() >= RESERVED + data.length) {
+                int start = writeBuffer.position() + RESERVED;
+                writeBuffer.position(start);
+                writeBuffer.put(data);
+                int headerSize = NIOTools.varLongSize((long) data.length << 1);
+                NIOTools.putVarLong(writeBuffer, start - headerSize, (long) data.length << 1);
+                ByteBuffer frame = writeBuffer.duplicate();
+                frame.limit(writeBuffer.position());
+                frame.position(start - headerSize);
+                bc.frame = buffers[off] = frame;
+                bc.firstStart = start;
+                bc.firstLength = data.length;
+                bc.count = 1;
+                return 1;
+            }
+        }
+        if (buffers.length - off < 2 || writeBuffer.remaining() < 5)
+            return 0;
+        ByteBuffer header = writeBuffer.slice();
+        NIOTools.putVarLong(header, (long) data.length << 1);
+        header.flip();
+        writeBuffer.position(writeBuffer.position() + header.limit());
+        buffers[off] = header;
+        buffers[off + 1] = copyDirect(ctx, data);
+        return 2;
+    }
+
+    /**
+     * 子类可以把其它类型的报文转换为body，空间不足时同一个报文会再次传入
+     */
+    protected byte[] toBytes(ChannelContext ctx, Object packet) throws IOException {
+        return (byte[]) packet;
+    }
+
+    /**
+     * 把小报文追加到当前帧，第一次追加时把单个报文改写为批量报文
+     */
+    private void append(ByteBuffer writeBuffer, BatchContext bc, byte[] data) {
+        NIOTools.putVarLong(writeBuffer, data.length);
+        writeBuffer.put(data);
+        bc.count++;
+        int itemsStart = bc.firstStart - NIOTools.varLongSize(bc.firstLength);
+        if (bc.count == 2)
+            NIOTools.putVarLong(writeBuffer, itemsStart, bc.firstLength);
+        int countStart = itemsStart - NIOTools.varLongSize(bc.count);
+        NIOTools.putVarLong(writeBuffer, countStart, bc.count);
+        long header = ((long) (writeBuffer.position() - countStart) << 1) | 1;
+        int headerStart = countStart - NIOTools.varLongSize(header);
+        NIOTools.putVarLong(writeBuffer, headerStart, header);
+        bc.frame.limit(writeBuffer.position());
+        bc.frame.position(headerStart);
+    }
+}
@@ -3,9 +3,10 @@ package com.sjm.core.nio.ext;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
 
 import com.sjm.core.nio.core.ChannelContext;
 import com.sjm.core.nio.core.ChannelDecoder;
@@ -13,9 +14,13 @@ import com.sjm.core.util.core.IOUtil;
 
 /**
  * 报文类型： File（实现零拷贝）
- * 
+ *
  * 报文结构： [总长度，包括自己(固定8字节)] [body]
- * 
+ *
+ * 文件由FileAllocator分配（默认为临时文件），接收前按报文头中的长度预先设置文件大小；
+ * 长度不小于mmapThreshold且可以零拷贝时把文件分段映射到内存，直接从socket读入MappedByteBuffer，每段写满后立即解除映射。
+ * 连接在文件接收完之前关闭时，只有deleteIncomplete为true才删除未接收完的文件。
+ *
  * @author root
  *
  */
@@ -24,6 +29,15 @@ public class FileDecoder extends ChannelDecoder {
     static final int STATE_HEADER = 0;
     static final int STATE_BODY = 1;
 
+    static final int MMAP_WINDOW = 64 * 1024 * 1024;
+
+    public interface FileAllocator {
+        public File allocate(ChannelContext ctx, long length) throws IOException;
+    }
+
+    public static final FileAllocator TEMP_FILE_ALLOCATOR =
+            (ctx, length) -> Files.createTempFile(null, null).toFile();
+
     static class DecodeContext implements Closeable {
         public int state;
         public byte[] header = new byte[8];
@@ -32,36 +46,79 @@ public class FileDecoder extends ChannelDecoder {
         public long position;
         public File file;
         public FileChannel fc;
+        public MappedByteBuffer mapped;
+        public boolean deleteIncomplete;
 
         @Override
         public void close() throws IOException {
+            NIOTools.unmap(mapped);
+            mapped = null;
             IOUtil.close(fc);
-            file.delete();
+            if (file != null && deleteIncomplete)
+                file.delete();
         }
     }
 
+    private FileAllocator allocator;
+    private long mmapThreshold;
+    private boolean deleteIncomplete;
+
+    /**
+     * @param allocator 为每个报文分配目标文件
+     * @param mmapThreshold 文件长度达到该值时使用内存映射接收
+     * @param deleteIncomplete 连接关闭时是否删除未接收完的文件
+     */
+    public FileDecoder(FileAllocator allocator, long mmapThreshold, boolean deleteIncomplete) {
+        this.allocator = allocator;
+        this.mmapThreshold = mmapThreshold;
+        this.deleteIncomplete = deleteIncomplete;
+    }
+
+    /**
+     * 只有使用TEMP_FILE_ALLOCATOR时才删除未接收完的文件，其它allocator分配的文件由调用者处理
+     */
+    public FileDecoder(FileAllocator allocator, long mmapThreshold) {
+        this(allocator, mmapThreshold, allocator == TEMP_FILE_ALLOCATOR);
+    }
+
+    public FileDecoder() {
+        this(TEMP_FILE_ALLOCATOR, Long.MAX_VALUE);
+    }
+
     @Override
     protected boolean decode(ChannelContext ctx) throws IOException {
         DecodeContext dc = getDecodeContext(ctx);
         int n = -1;
         switch (dc.state) {
             case STATE_HEADER: {
-                n = Math.min(ctx.readBuffer.remaining(), dc.header.length - dc.headerIndex);
-                ctx.readBuffer.get(dc.header, dc.headerIndex, n);
-                dc.headerIndex += n;
+                if (dc.headerIndex == 0 && ctx.readBuffer.remaining() >= 8) {
+                    n = 8;
+                    dc.headerIndex = 8;
+                    dc.total = ctx.readBuffer.getLong();
+                } else {
+                    n = Math.min(ctx.readBuffer.remaining(), dc.header.length - dc.headerIndex);
+                    ctx.readBuffer.get(dc.header, dc.headerIndex, n);
+                    dc.headerIndex += n;
+                    if (dc.headerIndex == dc.header.length)
+                        dc.total = NIOTools.getLong(dc.header, 0);
+                }
                 if (dc.headerIndex == dc.header.length) {
-                    dc.total = NIOTools.getLong(dc.header, 0);
-                    dc.file = Files.createTempFile(null, null).toFile();
-                    dc.fc = FileChannel.open(dc.file.toPath(), StandardOpenOption.WRITE);
+                    if (dc.total < 0)
+                        throw new IOException("Invalid file length " + dc.total);
+                    openFile(ctx, dc);
                     dc.state = STATE_BODY;
                 }
                 break;
             }
             case STATE_BODY: {
-                n = (int) Math.min(ctx.readBuffer.remaining(), dc.total);
+                if (dc.position == dc.total) {
+                    finish(ctx, dc);
+                    break;
+                }
+                n = (int) Math.min(ctx.readBuffer.remaining(), dc.total - dc.position);
                 int oldLimit = ctx.readBuffer.limit();
                 ctx.readBuffer.limit(ctx.readBuffer.position() + n);
-                int len = dc.fc.write(ctx.readBuffer);
+                int len = dc.fc.write(ctx.readBuffer, dc.position);
                 if (len != n)
                     throw new IOException();
                 dc.position += n;
@@ -78,36 +135,67 @@ public class FileDecoder extends ChannelDecoder {
     @Override
     protected int beforeRead(ChannelContext ctx) throws IOException {
         DecodeContext dc = getDecodeContext(ctx);
-        if (dc.state == STATE_BODY) {
-            while (true) {
-                long n = dc.fc.transferFrom(ctx.channel, dc.position, dc.total - dc.position);
+        if (dc.state == STATE_BODY && ctx.isZeroCopySupported()) {
+            while (dc.position < dc.total) {
+                long n;
+                if (dc.total >= mmapThreshold) {
+                    n = ctx.channel.read(mapWindow(dc));
+                } else {
+                    n = dc.fc.transferFrom(ctx.channel, dc.position, dc.total - dc.position);
+                    if (n == 0)
+                        return 1;// 连接关闭时transferFrom也返回0，交给普通的read判断
+                }
                 if (n <= 0) {
                     return (int) n;
                 }
                 dc.position += n;
-                if (dc.position == dc.total) {
-                    finish(ctx, dc);
-                    break;
-                }
             }
+            finish(ctx, dc);
         }
         return 1;
     }
 
+    private void openFile(ChannelContext ctx, DecodeContext dc) throws IOException {
+        dc.file = allocator.allocate(ctx, dc.total);
+        dc.position = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(dc.file, "rw")) {
+            raf.setLength(dc.total);
+        }
+        dc.fc = new RandomAccessFile(dc.file, "rw").getChannel();
+    }
+
+    /**
+     * 返回当前位置对应的映射窗口，上一个窗口写满后解除映射并映射下一段
+     */
+    private MappedByteBuffer mapWindow(DecodeContext dc) throws IOException {
+        if (dc.mapped == null || !dc.mapped.hasRemaining()) {
+            NIOTools.unmap(dc.mapped);
+            dc.mapped = null;
+            long size = Math.min(MMAP_WINDOW, dc.total - dc.position);
+            dc.mapped = dc.fc.map(FileChannel.MapMode.READ_WRITE, dc.position, size);
+        }
+        return dc.mapped;
+    }
+
     private void finish(ChannelContext ctx, DecodeContext dc) throws IOException {
+        NIOTools.unmap(dc.mapped);
         dc.fc.close();
-        ctx.processer.process(ctx, dc.file);
+        File file = dc.file;
         dc.headerIndex = 0;
         dc.position = 0;
         dc.fc = null;
+        dc.mapped = null;
         dc.file = null;
         dc.state = STATE_HEADER;
+        ctx.processer.process(ctx, file);
     }
 
     private DecodeContext getDecodeContext(ChannelContext ctx) {
         DecodeContext dc = (DecodeContext) ctx.decodeCotext;
-        if (dc == null)
+        if (dc == null) {
             ctx.decodeCotext = dc = new DecodeContext();
+            dc.deleteIncomplete = deleteIncomplete;
+        }
         return dc;
     }
 }
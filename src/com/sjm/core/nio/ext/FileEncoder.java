@@ -61,6 +61,15 @@ public class FileEncoder extends ChannelEncoder {
                 break;
             }
             case STATE_BODY: {
+                if (ec.position == ec.total) {
+                    finish(ctx, ec);
+                    break;
+                }
+                if (ctx.isZeroCopySupported()) {
+                    // 先把报文头写出，body交给beforeWrite通过transferTo发送
+                    n = 0;
+                    break;
+                }
                 n = ec.fc.read(ctx.writeBuffer);
                 if (n == -1)
                     throw new IOException();
@@ -77,25 +86,23 @@ public class FileEncoder extends ChannelEncoder {
 
     protected int beforeWrite(ChannelContext ctx) throws IOException {
         EncodeContext ec = getEncodeContext(ctx);
-        if (ec.state == STATE_BODY) {
-            while (true) {
-                long n = ec.fc.transferTo(ec.position, ec.total - ec.position, ctx.channel);
+        if (ec.state == STATE_BODY && ctx.isZeroCopySupported()) {
+            while (ec.position < ec.total) {
+                long n = ctx.transferFileTo(ec.fc, ec.position, ec.total - ec.position);
                 if (n <= 0) {
                     return (int) n;
                 }
                 ec.position += n;
-                if (ec.position == ec.total) {
-                    finish(ctx, ec);
-                    break;
-                } else if (ec.position > ec.total)
-                    throw new IOException();
             }
+            if (ec.position > ec.total)
+                throw new IOException();
+            finish(ctx, ec);
         }
         return 1;
     }
 
     private void finish(ChannelContext ctx, EncodeContext ec) throws IOException {
-        ctx.writeQueue.poll();
+        ctx.pollWrite();
         ec.fc.close();
         ec.headerIndex = 0;
         ec.position = 0;
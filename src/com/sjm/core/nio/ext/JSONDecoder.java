@@ -0,0 +1,152 @@
+package com.sjm.core.nio.ext;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.ChannelDecoder;
+import com.sjm.core.util.core.ByteScanner;
+import com.sjm.core.util.core.JSON;
+
+/**
+ * 报文类型： 用JSON.Deserializer解析出的对象
+ *
+ * 报文结构： 见{@link JSONEncoder}，报文之间的空白字符被忽略，每个报文必须是JSON对象或数组
+ *
+ * 从readBuffer中边接收边扫描括号的嵌套层数，找到报文的结尾后直接解析，不需要长度前缀
+ *
+ * @author root
+ *
+ */
+public class JSONDecoder extends ChannelDecoder {
+
+    private static final int INITIAL_SIZE = 256;
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;// 解析完超过这个大小的报文后data缩回初始大小
+
+    static class DecodeContext {
+        public byte[] data = new byte[INITIAL_SIZE];
+        public int dataLength;
+        public int scanIndex;// data中已扫描的位置
+        public int depth;
+        public byte quote;// 当前字符串的引号，不在字符串中时为0
+        public boolean escape;
+    }
+
+    private static final long BACKSLASH = ByteScanner.pattern('\\');
+
+    private JSON.Deserializer deserializer;
+    private int maxFrameSize;
+
+    public JSONDecoder(JSON.Deserializer deserializer, int maxFrameSize) {
+        this.deserializer = deserializer;
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public JSONDecoder(Type type) {
+        this(JSON.Deserializers.forType(type), 16 * 1024 * 1024);
+    }
+
+    public JSONDecoder() {
+        this(JSON.Deserializers.forDefault, 16 * 1024 * 1024);
+    }
+
+    @Override
+    protected boolean decode(ChannelContext ctx) throws IOException {
+        DecodeContext dc = (DecodeContext) ctx.decodeCotext;
+        if (dc == null)
+            ctx.decodeCotext = dc = new DecodeContext();
+        ByteBuffer readBuffer = ctx.readBuffer;
+        if (dc.dataLength == 0) {
+            while (readBuffer.hasRemaining() && isWhitespace(readBuffer.get(readBuffer.position())))
+                readBuffer.get();
+            if (!readBuffer.hasRemaining())
+                return false;
+            byte first = readBuffer.get(readBuffer.position());
+            if (first != '{' && first != '[')
+                throw new IOException("Invalid JSON frame start '" + (char) first + "'");
+        }
+        if (!readBuffer.hasRemaining())
+            return false;
+        // 先整块拷贝再在数组上扫描，报文结尾之后多拷贝的部分退回readBuffer
+        int position = readBuffer.position();
+        int n = readBuffer.remaining();
+        if (dc.data.length - dc.dataLength < n)
+            dc.data = Arrays.copyOf(dc.data, Math.max(dc.dataLength + n,
+                    (int) Math.min((long) dc.data.length * 2, maxFrameSize)));
+        readBuffer.get(dc.data, dc.dataLength, n);
+        dc.dataLength += n;
+        int end = scan(dc);
+        if (end < 0) {
+            if (dc.dataLength > maxFrameSize)
+                throw new IOException("Invalid frame length " + dc.dataLength);
+            return true;
+        }
+        readBuffer.position(position + end - (dc.dataLength - n));
+        if (end > maxFrameSize)
+            throw new IOException("Invalid frame length " + end);
+        Object value;
+        try {
+            value = JSON.parse(dc.data, 0, end, deserializer);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid JSON frame", e);
+        } finally {
+            dc.dataLength = 0;
+            dc.scanIndex = 0;
+            if (dc.data.length > MAX_RETAINED_SIZE)
+                dc.data = new byte[INITIAL_SIZE];
+        }
+        ctx.processer.process(ctx, value);
+        return true;
+    }
+
+    /**
+     * 从上次扫描的位置继续扫描
+     *
+     * @return 报文结尾在data中的位置，报文还不完整时返回-1
+     */
+    private static int scan(DecodeContext dc) {
+        byte[] data = dc.data;
+        int depth = dc.depth;
+        byte quote = dc.quote;
+        boolean escape = dc.escape;
+        for (int i = dc.scanIndex, len = dc.dataLength; i < len; i++) {
+            if (quote != 0 && !escape) {
+                // 字符串内部只关心引号和'\\'，按8字节一组跳过
+                i = ByteScanner.indexOf(data, i, len, ByteScanner.pattern(quote), BACKSLASH);
+                if (i < 0)
+                    break;
+            }
+            byte b = data[i];
+            if (quote != 0) {
+                if (escape)
+                    escape = false;
+                else if (b == '\\')
+                    escape = true;
+                else if (b == quote)
+                    quote = 0;
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) {
+                    dc.depth = 0;
+                    dc.quote = 0;
+                    dc.escape = false;
+                    return i + 1;
+                }
+            }
+        }
+        dc.scanIndex = dc.dataLength;
+        dc.depth = depth;
+        dc.quote = quote;
+        dc.escape = escape;
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
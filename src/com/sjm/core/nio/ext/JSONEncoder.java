@@ -0,0 +1,92 @@
+package com.sjm.core.nio.ext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.ChannelEncoder;
+import com.sjm.core.util.core.JSON;
+
+/**
+ * 报文类型： 用JSON.Serializer序列化的对象，序列化结果必须是JSON对象或数组
+ *
+ * 报文结构： [UTF-8编码的JSON] [\n]
+ *
+ * 对象直接以UTF-8序列化到writeBuffer。剩余空间放不下时先写出之前的报文，下一轮在空的writeBuffer中重新序列化；
+ * 整个writeBuffer都放不下的报文序列化成字节数组，分多轮拷贝
+ *
+ * @author root
+ *
+ */
+public class JSONEncoder extends ChannelEncoder {
+
+    static class EncodeContext {
+        public ByteBuffer pending;// 正在分段拷贝的大报文，为null表示需要从队列中取下一个报文
+    }
+
+    private JSON.JSONWriter<Object> writer;
+
+    public JSONEncoder(JSON.Serializer serializer) {
+        this.writer = new JSON.JSONWriter<>(serializer);
+    }
+
+    public JSONEncoder(Type type) {
+        this(JSON.Serializers.forType(type));
+    }
+
+    public JSONEncoder() {
+        this(JSON.Serializers.forAny);
+    }
+
+    @Override
+    protected boolean encode(ChannelContext ctx) throws IOException {
+        EncodeContext ec = (EncodeContext) ctx.encodeCotext;
+        if (ec == null)
+            ctx.encodeCotext = ec = new EncodeContext();
+        ByteBuffer writeBuffer = ctx.writeBuffer;
+        if (ec.pending == null) {
+            if (ctx.writeQueue.isEmpty())
+                return false;
+            Object packet = ctx.writeQueue.peek();
+            int position = writeBuffer.position();
+            try {
+                writer.writeTo(packet, writeBuffer);
+                writeBuffer.put((byte) '\n');
+                ctx.pollWrite();
+                return true;
+            } catch (BufferOverflowException e) {
+                writeBuffer.position(position);
+                if (position > 0)
+                    return false;
+            } catch (RuntimeException e) {
+                writeBuffer.position(position);
+                throw new IOException("Serialize " + packet.getClass() + " failed", e);
+            }
+            ec.pending = ByteBuffer.wrap(serialize(packet));
+        }
+        ByteBuffer pending = ec.pending;
+        int limit = pending.limit();
+        pending.limit(pending.position() + Math.min(pending.remaining(), writeBuffer.remaining()));
+        writeBuffer.put(pending);
+        pending.limit(limit);
+        if (pending.hasRemaining())
+            return false;
+        ec.pending = null;
+        ctx.pollWrite();
+        return true;
+    }
+
+    private byte[] serialize(Object packet) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writer.writeTo(packet, out);
+        } catch (RuntimeException e) {
+            throw new IOException("Serialize " + packet.getClass() + " failed", e);
+        }
+        out.write('\n');
+        return out.toByteArray();
+    }
+}
@@ -1,5 +1,12 @@
 package com.sjm.core.nio.ext;
 
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.function.Consumer;
+
 public class NIOTools {
     public static int getInt(byte[] bytes, int off) {
         int val = 0;
@@ -28,4 +35,118 @@ public class NIOTools {
             bytes[i + off] = (byte) ((val >>> (8 * (7 - i))) & 0xff);
         }
     }
+
+    /**
+     * 无符号varint（每字节7位，低位在前，最高位为1表示后面还有字节）占用的字节数
+     */
+    public static int varLongSize(long val) {
+        int size = 1;
+        while ((val & ~0x7fL) != 0) {
+            val >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static int putVarLong(byte[] bytes, int off, long val) {
+        while ((val & ~0x7fL) != 0) {
+            bytes[off++] = (byte) ((val & 0x7f) | 0x80);
+            val >>>= 7;
+        }
+        bytes[off++] = (byte) val;
+        return off;
+    }
+
+    public static void putVarLong(ByteBuffer buffer, long val) {
+        while ((val & ~0x7fL) != 0) {
+            buffer.put((byte) ((val & 0x7f) | 0x80));
+            val >>>= 7;
+        }
+        buffer.put((byte) val);
+    }
+
+    /**
+     * 写在index开始的位置，不改变buffer的position
+     */
+    public static void putVarLong(ByteBuffer buffer, int index, long val) {
+        while ((val & ~0x7fL) != 0) {
+            buffer.put(index++, (byte) ((val & 0x7f) | 0x80));
+            val >>>= 7;
+        }
+        buffer.put(index, (byte) val);
+    }
+
+    private static final Consumer<ByteBuffer> UNMAPPER = newUnmapper();
+
+    /**
+     * 立即解除映射，不等待GC回收buffer，之后不能再访问buffer；JDK不支持时什么也不做
+     */
+    public static void unmap(MappedByteBuffer buffer) {
+        if (buffer != null && UNMAPPER != null)
+            UNMAPPER.accept(buffer);
+    }
+
+    private static Consumer<ByteBuffer> newUnmapper() {
+        try {
+            // Java 9及以上
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+        }
+        try {
+            // Java 8
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object c = invoke(cleaner, buffer);
+                if (c != null)
+                    invoke(clean, c);
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 直接从ByteBuffer中逐字节读取varint，数据可以分多次到达
+     */
+    public static class VarLongReader {
+        private long value;
+        private int shift;
+
+        /**
+         * @return true表示已读取完整，通过take取出
+         */
+        public boolean read(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0)
+                    return true;
+                shift += 7;
+                if (shift >= 64)
+                    throw new IOException("Malformed varint");
+            }
+            return false;
+        }
+
+        public long take() {
+            long val = value;
+            value = 0;
+            shift = 0;
+            return val;
+        }
+    }
 }
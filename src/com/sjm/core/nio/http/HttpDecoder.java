@@ -0,0 +1,236 @@
+package com.sjm.core.nio.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.ChannelDecoder;
+
+/**
+ * 报文类型： HttpRequest
+ *
+ * 报文结构： HTTP/1.1请求，请求体按Content-Length或chunked编码读取，chunked的分块合并后交付
+ *
+ * 同一连接上流水线发送的请求按顺序逐个交付
+ *
+ * @author root
+ *
+ */
+public class HttpDecoder extends ChannelDecoder {
+
+    static final int STATE_REQUEST_LINE = 0;
+    static final int STATE_HEADER = 1;
+    static final int STATE_BODY = 2;
+    static final int STATE_CHUNK_SIZE = 3;
+    static final int STATE_CHUNK_DATA = 4;
+    static final int STATE_CHUNK_END = 5;
+    static final int STATE_TRAILER = 6;
+
+    static class DecodeContext {
+        public int state;
+        public byte[] line = new byte[256];
+        public int lineLength;
+        public int headSize;// 请求行和头部的总长度
+        public HttpRequest request;
+        public byte[] body;
+        public int bodyLength;
+        public int chunkRemaining;
+    }
+
+    private int maxHeaderSize;
+    private int maxBodySize;
+
+    public HttpDecoder(int maxHeaderSize, int maxBodySize) {
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+    }
+
+    public HttpDecoder() {
+        this(8192, 10 * 1024 * 1024);
+    }
+
+    @Override
+    protected boolean decode(ChannelContext ctx) throws IOException {
+        DecodeContext dc = (DecodeContext) ctx.decodeCotext;
+        if (dc == null)
+            ctx.decodeCotext = dc = new DecodeContext();
+        ByteBuffer readBuffer = ctx.readBuffer;
+        if (!readBuffer.hasRemaining())
+            return false;
+        switch (dc.state) {
+            case STATE_REQUEST_LINE: {
+                String line = readLine(readBuffer, dc, true);
+                if (line == null)
+                    return false;
+                if (!line.isEmpty())// 忽略请求之间多余的空行
+                    parseRequestLine(dc, line);
+                break;
+            }
+            case STATE_HEADER: {
+                String line = readLine(readBuffer, dc, true);
+                if (line == null)
+                    return false;
+                if (line.isEmpty())
+                    endHeaders(ctx, dc);
+                else
+                    parseHeader(dc, line);
+                break;
+            }
+            case STATE_BODY: {
+                int n = Math.min(readBuffer.remaining(), dc.body.length - dc.bodyLength);
+                readBuffer.get(dc.body, dc.bodyLength, n);
+                dc.bodyLength += n;
+                if (dc.bodyLength == dc.body.length)
+                    finish(ctx, dc);
+                break;
+            }
+            case STATE_CHUNK_SIZE: {
+                String line = readLine(readBuffer, dc, false);
+                if (line == null)
+                    return false;
+                int i = line.indexOf(';');
+                int size;
+                try {
+                    size = Integer.parseInt((i < 0 ? line : line.substring(0, i)).trim(), 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid chunk size " + line);
+                }
+                if (size < 0 || size > maxBodySize - dc.bodyLength)
+                    throw new IOException("Request body too large");
+                if (size == 0) {
+                    dc.state = STATE_TRAILER;
+                } else {
+                    if (dc.body.length - dc.bodyLength < size)
+                        dc.body = Arrays.copyOf(dc.body,
+                                Math.max(dc.body.length * 2, dc.bodyLength + size));
+                    dc.chunkRemaining = size;
+                    dc.state = STATE_CHUNK_DATA;
+                }
+                break;
+            }
+            case STATE_CHUNK_DATA: {
+                int n = Math.min(readBuffer.remaining(), dc.chunkRemaining);
+                readBuffer.get(dc.body, dc.bodyLength, n);
+                dc.bodyLength += n;
+                dc.chunkRemaining -= n;
+                if (dc.chunkRemaining == 0)
+                    dc.state = STATE_CHUNK_END;
+                break;
+            }
+            case STATE_CHUNK_END: {
+                String line = readLine(readBuffer, dc, false);
+                if (line == null)
+                    return false;
+                if (!line.isEmpty())
+                    throw new IOException("Invalid chunk end");
+                dc.state = STATE_CHUNK_SIZE;
+                break;
+            }
+            case STATE_TRAILER: {
+                String line = readLine(readBuffer, dc, false);
+                if (line == null)
+                    return false;
+                if (line.isEmpty()) {
+                    dc.body = Arrays.copyOf(dc.body, dc.bodyLength);
+                    finish(ctx, dc);
+                }
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取以LF结尾的一行，去掉结尾的CR
+     *
+     * @return 行还不完整时返回null
+     */
+    private String readLine(ByteBuffer readBuffer, DecodeContext dc, boolean head)
+            throws IOException {
+        while (readBuffer.hasRemaining()) {
+            byte b = readBuffer.get();
+            if (b == '\n') {
+                int len = dc.lineLength;
+                if (len > 0 && dc.line[len - 1] == '\r')
+                    len--;
+                dc.lineLength = 0;
+                return new String(dc.line, 0, len, StandardCharsets.ISO_8859_1);
+            }
+            if (head && ++dc.headSize > maxHeaderSize)
+                throw new IOException("Request header too large");
+            if (dc.lineLength == dc.line.length) {
+                if (dc.lineLength >= maxHeaderSize)
+                    throw new IOException("Line too long");
+                dc.line = Arrays.copyOf(dc.line, dc.line.length * 2);
+            }
+            dc.line[dc.lineLength++] = b;
+        }
+        return null;
+    }
+
+    private void parseRequestLine(DecodeContext dc, String line) throws IOException {
+        int i = line.indexOf(' ');
+        int j = line.lastIndexOf(' ');
+        if (i <= 0 || j <= i)
+            throw new IOException("Invalid request line " + line);
+        HttpRequest request = new HttpRequest();
+        request.method = line.substring(0, i);
+        request.uri = line.substring(i + 1, j).trim();
+        request.version = line.substring(j + 1);
+        if (!request.version.startsWith("HTTP/1."))
+            throw new IOException("Unsupported version " + request.version);
+        int q = request.uri.indexOf('?');
+        request.path = HttpSupport.decodeURL(q < 0 ? request.uri : request.uri.substring(0, q));
+        request.query = q < 0 ? null : request.uri.substring(q + 1);
+        dc.request = request;
+        dc.state = STATE_HEADER;
+    }
+
+    private void parseHeader(DecodeContext dc, String line) throws IOException {
+        int i = line.indexOf(':');
+        if (i <= 0)
+            throw new IOException("Invalid header " + line);
+        String name = line.substring(0, i).trim().toLowerCase();
+        String value = line.substring(i + 1).trim();
+        dc.request.headers.merge(name, value, (a, b) -> a + ", " + b);
+    }
+
+    private void endHeaders(ChannelContext ctx, DecodeContext dc) throws IOException {
+        String transferEncoding = dc.request.headers.get("transfer-encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            dc.body = new byte[256];
+            dc.state = STATE_CHUNK_SIZE;
+            return;
+        }
+        String contentLength = dc.request.headers.get("content-length");
+        long length = 0;
+        if (contentLength != null) {
+            try {
+                length = Long.parseLong(contentLength);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length " + contentLength);
+            }
+        }
+        if (length < 0 || length > maxBodySize)
+            throw new IOException("Invalid Content-Length " + length);
+        if (length == 0) {
+            finish(ctx, dc);
+        } else {
+            dc.body = new byte[(int) length];
+            dc.state = STATE_BODY;
+        }
+    }
+
+    private void finish(ChannelContext ctx, DecodeContext dc) {
+        HttpRequest request = dc.request;
+        request.body = dc.body;
+        dc.request = null;
+        dc.body = null;
+        dc.bodyLength = 0;
+        dc.headSize = 0;
+        dc.state = STATE_REQUEST_LINE;
+        ctx.processer.process(ctx, request);
+    }
+}
@@ -0,0 +1,202 @@
+package com.sjm.core.nio.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.ChannelEncoder;
+import com.sjm.core.util.core.IOUtil;
+
+/**
+ * 报文类型： HttpResponse
+ *
+ * 报文结构： HTTP/1.1响应，body按Content-Length发送，file的内容通过transferTo零拷贝发送，
+ * chunks按chunked编码逐块发送（HTTP/1.0的请求不支持chunked，直接发送内容后关闭连接）
+ *
+ * 响应按写入顺序发送，流水线请求的响应顺序由HttpServer按请求顺序写入保证；keepAlive为false的响应写完后关闭连接
+ *
+ * @author root
+ *
+ */
+public class HttpEncoder extends ChannelEncoder {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    static final int STATE_PARTS = 0;
+    static final int STATE_FILE = 1;
+
+    static class EncodeContext implements Closeable {
+        public int state;
+        public HttpResponse response;// 正在发送的响应
+        public boolean chunked;
+        public byte[][] parts = new byte[3][];// 依次拷贝到writeBuffer的内容
+        public int partCount;
+        public int part;
+        public int index;
+        public FileChannel fc;
+        public long position;
+        public long total;
+        public boolean closing;// 最后一个响应已写入writeBuffer，刷出后关闭连接
+
+        @Override
+        public void close() throws IOException {
+            IOUtil.close(fc);
+        }
+    }
+
+    @Override
+    protected boolean encode(ChannelContext ctx) throws IOException {
+        EncodeContext ec = getEncodeContext(ctx);
+        if (ec.closing)
+            return false;
+        switch (ec.state) {
+            case STATE_PARTS: {
+                if (ec.response == null) {
+                    if (ctx.writeQueue.isEmpty())
+                        return false;
+                    start(ec, (HttpResponse) ctx.writeQueue.peek());
+                }
+                if (ec.part == ec.partCount) {
+                    next(ctx, ec);
+                    return true;
+                }
+                byte[] part = ec.parts[ec.part];
+                int n = Math.min(ctx.writeBuffer.remaining(), part.length - ec.index);
+                ctx.writeBuffer.put(part, ec.index, n);
+                ec.index += n;
+                if (ec.index == part.length) {
+                    ec.parts[ec.part++] = null;
+                    ec.index = 0;
+                    return true;
+                }
+                return n != 0;
+            }
+            case STATE_FILE: {
+                if (ec.position == ec.total) {
+                    finish(ctx, ec);
+                    return true;
+                }
+                if (ctx.isZeroCopySupported()) {
+                    // 先把响应头写出，文件内容交给beforeWrite通过transferTo发送
+                    return false;
+                }
+                int n = ec.fc.read(ctx.writeBuffer);
+                if (n == -1)
+                    throw new IOException("File truncated " + ec.response.file);
+                ec.position += n;
+                if (ec.position == ec.total)
+                    finish(ctx, ec);
+                return n != 0;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int beforeWrite(ChannelContext ctx) throws IOException {
+        EncodeContext ec = getEncodeContext(ctx);
+        if (ec.state == STATE_FILE && ctx.isZeroCopySupported()) {
+            while (ec.position < ec.total) {
+                long n = ctx.transferFileTo(ec.fc, ec.position, ec.total - ec.position);
+                if (n <= 0) {
+                    return (int) n;
+                }
+                ec.position += n;
+            }
+            finish(ctx, ec);
+        }
+        return ec.closing ? -1 : 1;
+    }
+
+    private void start(EncodeContext ec, HttpResponse response) throws IOException {
+        ec.response = response;
+        ec.chunked = response.chunks != null && !response.http10;
+        if (response.chunks != null && response.http10)
+            response.keepAlive = false;
+        if (response.file != null) {
+            ec.fc = FileChannel.open(response.file.toPath(), StandardOpenOption.READ);
+            ec.total = ec.fc.size();
+            ec.position = 0;
+        }
+        ec.parts[0] = buildHead(ec, response);
+        ec.partCount = 1;
+        if (response.body != null && response.body.length != 0)
+            ec.parts[ec.partCount++] = response.body;
+        ec.part = 0;
+        ec.index = 0;
+    }
+
+    /**
+     * 当前的内容已全部拷贝，发送下一块、文件或结束响应
+     */
+    private void next(ChannelContext ctx, EncodeContext ec) throws IOException {
+        HttpResponse response = ec.response;
+        ec.part = ec.partCount = 0;
+        if (response.chunks != null && response.chunks.hasNext()) {
+            byte[] data = response.chunks.next();
+            if (data == null || data.length == 0)
+                return;
+            if (ec.chunked) {
+                ec.parts[ec.partCount++] =
+                        Integer.toHexString(data.length).concat("\r\n").getBytes(StandardCharsets.ISO_8859_1);
+                ec.parts[ec.partCount++] = data;
+                ec.parts[ec.partCount++] = CRLF;
+            } else {
+                ec.parts[ec.partCount++] = data;
+            }
+        } else if (ec.chunked) {
+            ec.chunked = false;
+            ec.parts[ec.partCount++] = LAST_CHUNK;
+        } else if (ec.fc != null) {
+            ec.state = STATE_FILE;
+        } else {
+            finish(ctx, ec);
+        }
+    }
+
+    private byte[] buildHead(EncodeContext ec, HttpResponse response) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("HTTP/1.1 ").append(response.status).append(' ').append(response.reason)
+                .append("\r\n");
+        sb.append("Date: ").append(HttpSupport.getDate()).append("\r\n");
+        for (Map.Entry<String, String> e : response.headers.entrySet())
+            sb.append(e.getKey()).append(": ").append(e.getValue()).append("\r\n");
+        if (ec.chunked) {
+            sb.append("Transfer-Encoding: chunked\r\n");
+        } else if (response.chunks == null && response.status != 204 && response.status != 304) {
+            long length = ec.fc != null ? ec.total
+                    : response.body != null ? response.body.length : 0;
+            sb.append("Content-Length: ").append(length).append("\r\n");
+        }
+        if (!response.keepAlive)
+            sb.append("Connection: close\r\n");
+        else if (response.http10)
+            sb.append("Connection: keep-alive\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private void finish(ChannelContext ctx, EncodeContext ec) throws IOException {
+        ctx.pollWrite();
+        if (!ec.response.keepAlive)
+            ec.closing = true;
+        if (ec.fc != null) {
+            ec.fc.close();
+            ec.fc = null;
+        }
+        ec.response = null;
+        ec.part = ec.partCount = 0;
+        ec.state = STATE_PARTS;
+    }
+
+    private EncodeContext getEncodeContext(ChannelContext ctx) {
+        EncodeContext ec = (EncodeContext) ctx.encodeCotext;
+        if (ec == null)
+            ctx.encodeCotext = ec = new EncodeContext();
+        return ec;
+    }
+}
@@ -0,0 +1,19 @@
+package com.sjm.core.nio.http;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记@Component bean中通过HttpServer.registerBeans注册的处理方法
+ *
+ * 参数为HttpRequest时传入请求，其他类型的参数（最多一个）从JSON请求体解析；返回值见HttpServer.toResponse
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface HttpMapping {
+    String value();// 路径
+
+    String method() default "GET";
+}
@@ -0,0 +1,60 @@
+package com.sjm.core.nio.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class HttpRequest {
+    public String method;
+    public String uri;// 请求行中的原始URI
+    public String path;// 解码后的路径，不含查询串
+    public String query;// 查询串，没有时为null
+    public String version;
+    public Map<String, String> headers = new HashMap<>();// 名称统一为小写，同名头部以", "合并
+    public byte[] body;
+
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    /**
+     * HTTP/1.1默认保持连接，HTTP/1.0需要显式指定keep-alive
+     */
+    public boolean isKeepAlive() {
+        String connection = getHeader("Connection");
+        if (connection != null) {
+            connection = connection.toLowerCase();
+            if (connection.contains("close"))
+                return false;
+            if (connection.contains("keep-alive"))
+                return true;
+        }
+        return "HTTP/1.1".equals(version);
+    }
+
+    public Map<String, String> getParameters() {
+        Map<String, String> params = new HashMap<>();
+        if (query == null)
+            return params;
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty())
+                continue;
+            int i = pair.indexOf('=');
+            if (i < 0)
+                params.put(HttpSupport.decodeURL(pair), "");
+            else
+                params.put(HttpSupport.decodeURL(pair.substring(0, i)),
+                        HttpSupport.decodeURL(pair.substring(i + 1)));
+        }
+        return params;
+    }
+
+    public String getBodyAsString() {
+        return body == null ? null : new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + uri + " " + version;
+    }
+}
@@ -0,0 +1,67 @@
+package com.sjm.core.nio.http;
+
+import java.io.File;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sjm.core.util.core.JSON;
+
+/**
+ * 响应体三选一：body、file（零拷贝发送）、chunks（以chunked编码逐块发送）
+ */
+public class HttpResponse {
+    public int status;
+    public String reason;
+    public Map<String, String> headers = new LinkedHashMap<>();
+    public byte[] body;
+    public File file;
+    public Iterator<byte[]> chunks;// 在selector线程上按需取下一块，不能阻塞
+    public boolean keepAlive = true;// 由HttpServer按请求设置，为false时写完后关闭连接
+    public boolean http10;// 请求是HTTP/1.0，保持连接时需要显式返回keep-alive
+
+    public HttpResponse(int status) {
+        this.status = status;
+        this.reason = HttpSupport.getReason(status);
+    }
+
+    public HttpResponse setHeader(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public HttpResponse setBody(byte[] body, String contentType) {
+        this.body = body;
+        return setHeader("Content-Type", contentType);
+    }
+
+    public static HttpResponse ok(byte[] body, String contentType) {
+        return new HttpResponse(200).setBody(body, contentType);
+    }
+
+    public static HttpResponse text(int status, String text) {
+        return new HttpResponse(status).setBody(text.getBytes(StandardCharsets.UTF_8),
+                "text/plain; charset=utf-8");
+    }
+
+    public static HttpResponse json(Object value) {
+        return ok(JSON.toJSONString(value).getBytes(StandardCharsets.UTF_8),
+                "application/json; charset=utf-8");
+    }
+
+    public static HttpResponse file(File file) {
+        HttpResponse response = new HttpResponse(200);
+        response.file = file;
+        String type = URLConnection.guessContentTypeFromName(file.getName());
+        return response.setHeader("Content-Type",
+                type == null ? "application/octet-stream" : type);
+    }
+
+    public static HttpResponse chunked(Iterator<byte[]> chunks, String contentType) {
+        HttpResponse response = new HttpResponse(200);
+        response.chunks = chunks;
+        return response.setHeader("Content-Type", contentType);
+    }
+}
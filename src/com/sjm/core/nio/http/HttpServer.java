@@ -0,0 +1,162 @@
+package com.sjm.core.nio.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sjm.core.logger.Logger;
+import com.sjm.core.logger.LoggerFactory;
+import com.sjm.core.nio.core.ByteBufferPool;
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.EventHandler;
+import com.sjm.core.nio.core.NIOServer;
+import com.sjm.core.springboot.Component;
+import com.sjm.core.springboot.SpringApplication;
+import com.sjm.core.util.core.JSON;
+
+/**
+ * HTTP服务端：按 方法+路径 精确匹配路由，未匹配的GET请求按前缀查找静态文件目录。
+ *
+ * 处理方法在onRead所在线程执行，响应按请求顺序写入，因此支持流水线；耗时的处理应配合NIOServer.setExecutor使用。
+ */
+public class HttpServer extends EventHandler {
+    static final Logger logger = LoggerFactory.getLogger(HttpServer.class);
+
+    public interface HttpHandler {
+        public Object handle(HttpRequest request) throws Exception;
+    }
+
+    static class StaticDirectory {
+        public String prefix;
+        public File dir;
+    }
+
+    private Map<String, HttpHandler> routes = new ConcurrentHashMap<>();
+    private List<StaticDirectory> staticDirectories = new ArrayList<>();
+
+    public NIOServer newServer(int port, int workerCount, ByteBufferPool bufferPool) {
+        return new NIOServer(port, workerCount, bufferPool, new HttpEncoder(), new HttpDecoder(),
+                this);
+    }
+
+    public void route(String method, String path, HttpHandler handler) {
+        if (routes.putIfAbsent(method.toUpperCase() + " " + path, handler) != null)
+            throw new IllegalArgumentException("Duplicate route " + method + " " + path);
+    }
+
+    /**
+     * 把dir下的文件映射到以prefix开头的路径
+     */
+    public void addStaticDirectory(String prefix, File dir) throws IOException {
+        StaticDirectory sd = new StaticDirectory();
+        sd.prefix = prefix.endsWith("/") ? prefix : prefix + "/";
+        sd.dir = dir.getCanonicalFile();
+        staticDirectories.add(sd);
+    }
+
+    /**
+     * 注册SpringApplication中所有@Component bean上标记了@HttpMapping的方法
+     */
+    public void registerBeans(SpringApplication app) {
+        for (Object bean : app.getBeansWithAnnotation(Component.class)) {
+            for (Method method : bean.getClass().getMethods()) {
+                HttpMapping mapping = method.getAnnotation(HttpMapping.class);
+                if (mapping != null)
+                    route(mapping.method(), mapping.value(), forMethod(bean, method));
+            }
+        }
+    }
+
+    private static HttpHandler forMethod(Object bean, Method method) {
+        Type[] types = method.getGenericParameterTypes();
+        JSON.Deserializer bodyDeserializer = null;
+        for (Type type : types) {
+            if (type == HttpRequest.class)
+                continue;
+            if (bodyDeserializer != null)
+                throw new IllegalArgumentException("More than one body parameter in " + method);
+            bodyDeserializer = JSON.Deserializers.forType(type);
+        }
+        JSON.Deserializer deserializer = bodyDeserializer;
+        return request -> {
+            Object[] args = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == HttpRequest.class)
+                    args[i] = request;
+                else if (request.body != null && request.body.length != 0)
+                    args[i] = JSON.parse(request.body, 0, request.body.length, deserializer);
+            }
+            try {
+                return method.invoke(bean, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        };
+    }
+
+    @Override
+    public void onRead(ChannelContext ctx, Object packet) throws IOException {
+        HttpRequest request = (HttpRequest) packet;
+        HttpResponse response;
+        try {
+            response = dispatch(request);
+        } catch (JSON.JSONException e) {
+            response = HttpResponse.text(400, String.valueOf(e.getMessage()));
+        } catch (Throwable e) {
+            logger.error(e.getMessage(), e);
+            response = HttpResponse.text(500, e.getClass().getName() + ": " + e.getMessage());
+        }
+        response.keepAlive = request.isKeepAlive();
+        response.http10 = "HTTP/1.0".equals(request.version);
+        ctx.write(response);
+    }
+
+    private HttpResponse dispatch(HttpRequest request) throws Exception {
+        HttpHandler handler = routes.get(request.method + " " + request.path);
+        if (handler != null)
+            return toResponse(handler.handle(request));
+        if (request.method.equals("GET")) {
+            File file = findStaticFile(request.path);
+            if (file != null)
+                return HttpResponse.file(file);
+        }
+        return HttpResponse.text(404, "Not Found");
+    }
+
+    private File findStaticFile(String path) throws IOException {
+        for (StaticDirectory sd : staticDirectories) {
+            if (!path.startsWith(sd.prefix))
+                continue;
+            File file = new File(sd.dir, path.substring(sd.prefix.length())).getCanonicalFile();
+            if (file.getPath().startsWith(sd.dir.getPath() + File.separator) && file.isFile())
+                return file;
+        }
+        return null;
+    }
+
+    /**
+     * HttpResponse原样返回，null返回204，byte[]、String、File分别作为二进制、文本、静态文件，其他对象序列化为JSON
+     */
+    public static HttpResponse toResponse(Object result) {
+        if (result instanceof HttpResponse)
+            return (HttpResponse) result;
+        if (result == null)
+            return new HttpResponse(204);
+        if (result instanceof byte[])
+            return HttpResponse.ok((byte[]) result, "application/octet-stream");
+        if (result instanceof String)
+            return HttpResponse.ok(((String) result).getBytes(StandardCharsets.UTF_8),
+                    "text/plain; charset=utf-8");
+        if (result instanceof File)
+            return HttpResponse.file((File) result);
+        return HttpResponse.json(result);
+    }
+}
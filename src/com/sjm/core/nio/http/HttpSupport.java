@@ -0,0 +1,56 @@
+package com.sjm.core.nio.http;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+class HttpSupport {
+    private static volatile String date;
+    private static volatile long dateSecond;
+
+    public static String getReason(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 204:
+                return "No Content";
+            case 400:
+                return "Bad Request";
+            case 403:
+                return "Forbidden";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 413:
+                return "Payload Too Large";
+            case 500:
+                return "Internal Server Error";
+            default:
+                return status < 400 ? "OK" : "Error";
+        }
+    }
+
+    public static String decodeURL(String str) {
+        try {
+            return URLDecoder.decode(str, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return str;
+        }
+    }
+
+    /**
+     * Date头部，按秒缓存
+     */
+    public static String getDate() {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != dateSecond || date == null) {
+            date = DateTimeFormatter.RFC_1123_DATE_TIME
+                    .format(ZonedDateTime.now(ZoneOffset.UTC));
+            dateSecond = second;
+        }
+        return date;
+    }
+}
@@ -0,0 +1,225 @@
+package com.sjm.core.nio.rpc;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sjm.core.nio.core.ByteBufferPool;
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.EventHandler;
+import com.sjm.core.nio.core.NIOClient;
+import com.sjm.core.nio.core.TimerWheel;
+import com.sjm.core.util.core.JSON.Deserializer;
+
+/**
+ * RPC客户端：一个连接上可以同时有任意多个未完成的请求，响应按关联ID完成对应的CompletableFuture，
+ * 超时由NIOClient的时间轮处理。
+ *
+ * 时间轮只能在selector线程上访问，其他线程发起的请求和完成的请求先放入timerUpdates，
+ * 由一个任务批量安排或取消超时，每批只唤醒一次selector。
+ */
+public class RpcClient extends EventHandler {
+    class PendingCall implements Runnable {
+        public long id;
+        public String methodKey;
+        public CompletableFuture<Object> future = new CompletableFuture<>();
+        public Deserializer resultDeserializer;
+        public long timeoutMillis;
+        public TimerWheel.Timeout timeout;// 只在selector线程上访问
+
+        @Override
+        public void run() {
+            if (pendingCalls.remove(id, this))
+                future.completeExceptionally(new TimeoutException(
+                        "Call [" + methodKey + "] timeout after " + timeoutMillis + "ms"));
+        }
+    }
+
+    static class MethodInfo {
+        public String key;
+        public Deserializer resultDeserializer;
+        public boolean async;
+    }
+
+    private NIOClient client;
+    private CompletableFuture<ChannelContext> connected = new CompletableFuture<>();
+    private Map<Long, PendingCall> pendingCalls = new ConcurrentHashMap<>();
+    private Map<Method, MethodInfo> methods = new ConcurrentHashMap<>();
+    private AtomicLong nextId = new AtomicLong();
+    private volatile long timeoutMillis = 30000;
+    private Queue<PendingCall> timerUpdates = new ConcurrentLinkedQueue<>();
+    private AtomicBoolean timerUpdateScheduled = new AtomicBoolean();
+
+    public RpcClient(String host, int port, ByteBufferPool bufferPool) {
+        this.client = new NIOClient(host, port, bufferPool, new RpcEncoder(), new RpcDecoder(), this);
+    }
+
+    public void setTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void start() {
+        client.start();
+    }
+
+    public void shutdown() {
+        client.shutdown();
+    }
+
+    public int getPendingCount() {
+        return pendingCalls.size();
+    }
+
+    /**
+     * @param methodKey 服务名#方法名/参数个数
+     */
+    public CompletableFuture<Object> call(String methodKey, Deserializer resultDeserializer,
+            Object... args) {
+        long id = nextId.incrementAndGet();
+        PendingCall call = new PendingCall();
+        call.id = id;
+        call.methodKey = methodKey;
+        call.resultDeserializer = resultDeserializer;
+        call.timeoutMillis = timeoutMillis;
+        RpcFrame frame;
+        try {
+            frame = new RpcFrame(id, RpcFrame.TYPE_REQUEST, RpcSupport.encodeRequest(methodKey, args));
+        } catch (Exception e) {
+            call.future.completeExceptionally(e);
+            return call.future;
+        }
+        pendingCalls.put(id, call);
+        updateTimer(call);
+        connected.whenComplete((ctx, error) -> {
+            if (error != null) {
+                fail(id, error);
+                return;
+            }
+            try {
+                ctx.write(frame);
+            } catch (Exception e) {
+                fail(id, e);
+            }
+        });
+        return call.future;
+    }
+
+    /**
+     * 返回iface的代理，返回值为CompletableFuture的方法不阻塞，其他方法等待结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getService(Class<T> iface) {
+        String service = iface.getName();
+        return (T) Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] {iface},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return "RpcProxy[" + service + "]";
+                        }
+                    }
+                    MethodInfo info = methods.computeIfAbsent(method, m -> {
+                        MethodInfo mi = new MethodInfo();
+                        mi.key = RpcSupport.getMethodKey(service, m);
+                        mi.resultDeserializer = RpcSupport.forType(RpcSupport.getResultType(m));
+                        mi.async = RpcSupport.isAsync(m);
+                        return mi;
+                    });
+                    CompletableFuture<Object> future = call(info.key, info.resultDeserializer, args);
+                    if (info.async)
+                        return future;
+                    try {
+                        return future.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException)
+                            throw cause;
+                        throw new RpcException(cause);
+                    }
+                });
+    }
+
+    private void fail(long id, Throwable error) {
+        PendingCall call = pendingCalls.remove(id);
+        if (call != null) {
+            call.future.completeExceptionally(error);
+            updateTimer(call);
+        }
+    }
+
+    /**
+     * 未完成的请求安排超时，已完成的请求取消超时
+     */
+    private void updateTimer(PendingCall call) {
+        if (client.inSelectorThread()) {
+            applyTimer(call);
+            return;
+        }
+        timerUpdates.offer(call);
+        if (timerUpdateScheduled.compareAndSet(false, true))
+            client.execute(this::applyTimerUpdates);
+    }
+
+    private void applyTimerUpdates() {
+        timerUpdateScheduled.set(false);
+        PendingCall call;
+        while ((call = timerUpdates.poll()) != null)
+            applyTimer(call);
+    }
+
+    private void applyTimer(PendingCall call) {
+        if (call.future.isDone()) {
+            if (call.timeout != null)
+                client.cancel(call.timeout);
+        } else if (call.timeout == null) {
+            call.timeout = client.scheduleTimeout(call, call.timeoutMillis);
+        }
+    }
+
+    @Override
+    public void onConnect(ChannelContext ctx) throws IOException {
+        connected.complete(ctx);
+    }
+
+    @Override
+    public void onRead(ChannelContext ctx, Object packet) throws IOException {
+        RpcFrame response = (RpcFrame) packet;
+        PendingCall call = pendingCalls.remove(response.id);
+        if (call == null)
+            return;
+        if (response.type == RpcFrame.TYPE_ERROR) {
+            call.future.completeExceptionally(
+                    new RpcException(new String(response.body, StandardCharsets.UTF_8)));
+        } else {
+            try {
+                call.future.complete(
+                        RpcSupport.decodeResult(response.body, call.resultDeserializer));
+            } catch (Exception e) {
+                call.future.completeExceptionally(e);
+            }
+        }
+        updateTimer(call);
+    }
+
+    @Override
+    public void onClose(ChannelContext ctx) throws IOException {
+        IOException error = new IOException("Connection closed: " + ctx);
+        connected.completeExceptionally(error);
+        for (Long id : pendingCalls.keySet())
+            fail(id, error);
+    }
+}
@@ -0,0 +1,93 @@
+package com.sjm.core.nio.rpc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.ChannelDecoder;
+import com.sjm.core.nio.ext.NIOTools;
+
+/**
+ * 报文类型： RpcFrame
+ * 
+ * 报文结构： [后续长度(固定4字节)] [关联ID(固定8字节)] [类型(固定1字节)] [body]
+ * 
+ * @author root
+ *
+ */
+public class RpcDecoder extends ChannelDecoder {
+
+    static final int STATE_HEADER = 0;
+    static final int STATE_BODY = 1;
+
+    static class DecodeContext {
+        public int state;
+        public byte[] header = new byte[RpcEncoder.HEADER_SIZE];
+        public int headerIndex;
+        public RpcFrame frame;
+        public int dataIndex;
+    }
+
+    private int maxFrameSize;
+
+    public RpcDecoder(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public RpcDecoder() {
+        this(16 * 1024 * 1024);
+    }
+
+    @Override
+    protected boolean decode(ChannelContext ctx) throws IOException {
+        DecodeContext dc = (DecodeContext) ctx.decodeCotext;
+        if (dc == null)
+            ctx.decodeCotext = dc = new DecodeContext();
+        int n = -1;
+        switch (dc.state) {
+            case STATE_HEADER: {
+                ByteBuffer readBuffer = ctx.readBuffer;
+                int length;
+                long id;
+                byte type;
+                if (dc.headerIndex == 0 && readBuffer.remaining() >= dc.header.length) {
+                    n = dc.header.length;
+                    length = readBuffer.getInt() - 9;
+                    id = readBuffer.getLong();
+                    type = readBuffer.get();
+                } else {
+                    n = Math.min(readBuffer.remaining(), dc.header.length - dc.headerIndex);
+                    readBuffer.get(dc.header, dc.headerIndex, n);
+                    dc.headerIndex += n;
+                    if (dc.headerIndex != dc.header.length)
+                        break;
+                    length = NIOTools.getInt(dc.header, 0) - 9;
+                    id = NIOTools.getLong(dc.header, 4);
+                    type = dc.header[12];
+                }
+                if (length < 0 || length > maxFrameSize)
+                    throw new IOException("Invalid frame length " + length);
+                dc.frame = new RpcFrame(id, type, new byte[length]);
+                dc.state = STATE_BODY;
+                break;
+            }
+            case STATE_BODY: {
+                byte[] body = dc.frame.body;
+                n = Math.min(ctx.readBuffer.remaining(), body.length - dc.dataIndex);
+                ctx.readBuffer.get(body, dc.dataIndex, n);
+                dc.dataIndex += n;
+                if (dc.dataIndex == body.length) {
+                    RpcFrame frame = dc.frame;
+                    dc.frame = null;
+                    dc.headerIndex = 0;
+                    dc.dataIndex = 0;
+                    dc.state = STATE_HEADER;
+                    ctx.processer.process(ctx, frame);
+                    n = Math.max(n, 1);
+                }
+                break;
+            }
+        }
+        return n != 0;
+    }
+}
@@ -0,0 +1,34 @@
+package com.sjm.core.nio.rpc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.GatheringEncoder;
+
+/**
+ * 报文类型： RpcFrame
+ * 
+ * 报文结构： [后续长度(固定4字节)] [关联ID(固定8字节)] [类型(固定1字节)] [body]
+ * 
+ * @author root
+ *
+ */
+public class RpcEncoder extends GatheringEncoder {
+    static final int HEADER_SIZE = 13;
+
+    @Override
+    protected int gather(ChannelContext ctx, Object packet, ByteBuffer[] buffers, int off)
+            throws IOException {
+        if (buffers.length - off < 2 || ctx.writeBuffer.remaining() < HEADER_SIZE)
+            return 0;
+        RpcFrame frame = (RpcFrame) packet;
+        ByteBuffer header = ctx.writeBuffer.slice();
+        header.limit(HEADER_SIZE);
+        header.putInt(frame.body.length + 9).putLong(frame.id).put(frame.type).flip();
+        ctx.writeBuffer.position(ctx.writeBuffer.position() + HEADER_SIZE);
+        buffers[off] = header;
+        buffers[off + 1] = copyDirect(ctx, frame.body);
+        return 2;
+    }
+}
@@ -0,0 +1,21 @@
+package com.sjm.core.nio.rpc;
+
+public class RpcException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public RpcException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public RpcException(Throwable cause) {
+        super(cause);
+    }
+
+    public RpcException(String message) {
+        super(message);
+    }
+
+    public RpcException() {
+        super();
+    }
+}
@@ -0,0 +1,17 @@
+package com.sjm.core.nio.rpc;
+
+public class RpcFrame {
+    public static final byte TYPE_REQUEST = 0;
+    public static final byte TYPE_RESPONSE = 1;
+    public static final byte TYPE_ERROR = 2;
+
+    public long id;// 关联ID，响应与请求相同
+    public byte type;
+    public byte[] body;
+
+    public RpcFrame(long id, byte type, byte[] body) {
+        this.id = id;
+        this.type = type;
+        this.body = body;
+    }
+}
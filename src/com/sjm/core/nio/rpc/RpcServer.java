@@ -0,0 +1,134 @@
+package com.sjm.core.nio.rpc;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sjm.core.logger.Logger;
+import com.sjm.core.logger.LoggerFactory;
+import com.sjm.core.nio.core.ByteBufferPool;
+import com.sjm.core.nio.core.ChannelContext;
+import com.sjm.core.nio.core.EventHandler;
+import com.sjm.core.nio.core.NIOServer;
+import com.sjm.core.springboot.SpringApplication;
+import com.sjm.core.util.core.JSON;
+import com.sjm.core.util.core.JSON.Deserializer;
+
+/**
+ * RPC服务端：按 服务名#方法名/参数个数 查找导出的方法，调用后以相同的关联ID返回结果。
+ * 
+ * 方法在onRead所在线程执行，耗时的服务应配合NIOServer.setExecutor使用；返回CompletableFuture的方法在完成时响应。
+ */
+public class RpcServer extends EventHandler {
+    static final Logger logger = LoggerFactory.getLogger(RpcServer.class);
+
+    static class MethodInfo {
+        public Object bean;
+        public Method method;
+        public Deserializer argumentsDeserializer;
+        public boolean async;
+    }
+
+    private Map<String, MethodInfo> methods = new ConcurrentHashMap<>();
+
+    public NIOServer newServer(int port, int workerCount, ByteBufferPool bufferPool) {
+        return new NIOServer(port, workerCount, bufferPool, new RpcEncoder(), new RpcDecoder(),
+                this);
+    }
+
+    /**
+     * 导出iface中声明的方法，服务名为iface的全名
+     */
+    public void export(Class<?> iface, Object bean) {
+        if (!iface.isInstance(bean))
+            throw new RpcException(bean.getClass() + " is not an instance of " + iface);
+        String service = iface.getName();
+        for (Method method : iface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()))
+                continue;
+            MethodInfo info = new MethodInfo();
+            info.bean = bean;
+            info.method = method;
+            info.argumentsDeserializer =
+                    RpcSupport.forArguments(method.getGenericParameterTypes());
+            info.async = RpcSupport.isAsync(method);
+            if (methods.putIfAbsent(RpcSupport.getMethodKey(service, method), info) != null)
+                throw new RpcException("Duplicate method " + RpcSupport.getMethodKey(service, method));
+        }
+    }
+
+    /**
+     * 导出SpringApplication中所有标记了@RpcService的bean
+     */
+    public void exportBeans(SpringApplication app) {
+        for (Object bean : app.getBeansWithAnnotation(RpcService.class)) {
+            Class<?>[] ifaces = bean.getClass().getAnnotation(RpcService.class).value();
+            if (ifaces.length == 0)
+                ifaces = bean.getClass().getInterfaces();
+            for (Class<?> iface : ifaces)
+                export(iface, bean);
+        }
+    }
+
+    @Override
+    public void onRead(ChannelContext ctx, Object packet) throws IOException {
+        RpcFrame request = (RpcFrame) packet;
+        if (request.type != RpcFrame.TYPE_REQUEST)
+            throw new IOException("Unexpected frame type " + request.type);
+        Object result;
+        MethodInfo info = null;
+        try {
+            String key = RpcSupport.decodeMethodKey(request.body);
+            info = methods.get(key);
+            if (info == null)
+                throw new RpcException("Method [" + key + "] not found");
+            Object[] args = (Object[]) JSON.parse(RpcSupport.decodeArguments(request.body),
+                    info.argumentsDeserializer);
+            result = info.method.invoke(info.bean, args);
+        } catch (Throwable e) {
+            if (e instanceof InvocationTargetException)
+                e = e.getCause();
+            replyError(ctx, request.id, e);
+            return;
+        }
+        if (info.async && result != null) {
+            ((CompletableFuture<?>) result).whenComplete((value, error) -> {
+                if (error != null)
+                    replyError(ctx, request.id, error);
+                else
+                    reply(ctx, request.id, value);
+            });
+        } else {
+            reply(ctx, request.id, result);
+        }
+    }
+
+    private void reply(ChannelContext ctx, long id, Object result) {
+        byte[] body;
+        try {
+            body = RpcSupport.encodeResult(result);
+        } catch (Exception e) {
+            replyError(ctx, id, e);
+            return;
+        }
+        write(ctx, new RpcFrame(id, RpcFrame.TYPE_RESPONSE, body));
+    }
+
+    private void replyError(ChannelContext ctx, long id, Throwable e) {
+        String message = e.getClass().getName() + ": " + e.getMessage();
+        write(ctx, new RpcFrame(id, RpcFrame.TYPE_ERROR, message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void write(ChannelContext ctx, RpcFrame frame) {
+        try {
+            ctx.write(frame);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.sjm.core.nio.rpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记需要通过RpcServer.exportBeans导出的bean，value为导出的接口，为空时导出bean实现的所有接口
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RpcService {
+    Class<?>[] value() default {};
+}
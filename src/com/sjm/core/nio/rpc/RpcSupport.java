@@ -0,0 +1,104 @@
+package com.sjm.core.nio.rpc;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import com.sjm.core.util.core.JSON;
+import com.sjm.core.util.core.JSON.Deserializer;
+import com.sjm.core.util.core.JSON.Key;
+
+/**
+ * 请求body结构： [方法名长度(固定2字节)] [方法名(UTF-8)] [参数(JSON数组)]
+ * 
+ * 方法名格式为 服务名#方法名/参数个数
+ */
+class RpcSupport {
+    public static String getMethodKey(String service, Method method) {
+        return service + "#" + method.getName() + "/" + method.getParameterCount();
+    }
+
+    public static boolean isAsync(Method method) {
+        return CompletableFuture.class.isAssignableFrom(method.getReturnType());
+    }
+
+    /**
+     * 返回值的实际类型，CompletableFuture<T>取T
+     */
+    public static Type getResultType(Method method) {
+        if (!isAsync(method))
+            return method.getGenericReturnType();
+        Type type = method.getGenericReturnType();
+        if (type instanceof ParameterizedType)
+            return ((ParameterizedType) type).getActualTypeArguments()[0];
+        return Object.class;
+    }
+
+    public static Deserializer nullable(Deserializer deserializer) {
+        return lex -> lex.getKey() == Key.NULL ? null : deserializer.deserialize(lex);
+    }
+
+    public static Deserializer forType(Type type) {
+        if (type == void.class || type == Void.class)
+            return lex -> null;
+        return nullable(JSON.Deserializers.forType(type));
+    }
+
+    public static Deserializer forArguments(Type[] types) {
+        Deserializer[] deserializers = new Deserializer[types.length];
+        for (int i = 0; i < types.length; i++)
+            deserializers[i] = forType(types[i]);
+        return lex -> {
+            if (lex.getKey() != Key.LMB)
+                throw lex.newError();
+            Object[] args = new Object[deserializers.length];
+            for (int i = 0; i < args.length; i++) {
+                lex.next();
+                if (i != 0) {
+                    if (lex.getKey() != Key.COMMA)
+                        throw lex.newError();
+                    lex.next();
+                }
+                args[i] = deserializers[i].deserialize(lex);
+            }
+            if (lex.next() != Key.RMB)
+                throw lex.newError();
+            return args;
+        };
+    }
+
+    public static byte[] encodeRequest(String methodKey, Object[] args) {
+        byte[] key = methodKey.getBytes(StandardCharsets.UTF_8);
+        byte[] json = JSON.toJSONString(args == null ? new Object[0] : args)
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[2 + key.length + json.length];
+        body[0] = (byte) (key.length >>> 8);
+        body[1] = (byte) key.length;
+        System.arraycopy(key, 0, body, 2, key.length);
+        System.arraycopy(json, 0, body, 2 + key.length, json.length);
+        return body;
+    }
+
+    public static String decodeMethodKey(byte[] body) {
+        return new String(body, 2, getMethodKeyLength(body), StandardCharsets.UTF_8);
+    }
+
+    public static String decodeArguments(byte[] body) {
+        int off = 2 + getMethodKeyLength(body);
+        return new String(body, off, body.length - off, StandardCharsets.UTF_8);
+    }
+
+    private static int getMethodKeyLength(byte[] body) {
+        return ((body[0] & 0xff) << 8) | (body[1] & 0xff);
+    }
+
+    public static byte[] encodeResult(Object result) {
+        return JSON.toJSONString(result).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static Object decodeResult(byte[] body, Deserializer deserializer) {
+        return JSON.parse(new String(body, StandardCharsets.UTF_8), deserializer);
+    }
+}
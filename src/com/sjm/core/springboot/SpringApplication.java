@@ -416,6 +416,14 @@ public class SpringApplication {
         return (T) getBean((Object) clazz);
     }
 
+    public List<Object> getBeansWithAnnotation(Class<? extends Annotation> annotationClass) {
+        List<Object> beans = new ArrayList<>();
+        for (BeanDefinition def : beanSet)
+            if (def.bean != null && def.bean.getClass().isAnnotationPresent(annotationClass))
+                beans.add(def.bean);
+        return beans;
+    }
+
     private Object[] getBeans(Object[] nameOrClasses) {
         Object[] beans = new Object[nameOrClasses.length];
         for (int i = 0; i < nameOrClasses.length; i++)
@@ -0,0 +1,761 @@
+package com.sjm.core.util.core;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import com.sjm.core.util.core.JSON.Deserializer;
+import com.sjm.core.util.core.JSON.Deserializers;
+import com.sjm.core.util.core.JSON.JSONException;
+import com.sjm.core.util.core.JSON.Serializer;
+
+/**
+ * 与JSON数据模型相同的二进制编码，用于内部服务之间的通信，省去数字格式化、base64和字符串转义
+ *
+ * 每个值以一个字节的类型开头：
+ *
+ * NULL | FALSE | TRUE | INT [zigzag varint] | FLOAT [4字节IEEE754] | DOUBLE [8字节IEEE754] |
+ * STRING [varint长度] [UTF-8] | BYTES [varint长度] [原始字节] | NUMBER [varint长度] [ASCII数字] |
+ * ARRAY 值... END | OBJECT (键 值)... END
+ *
+ * 写入时按类型生成BinarySerializer，类型的解析规则（集合、Map、bean的getter、泛型）与JSON.Serializers相同；
+ * 读取时由BinaryJSONLex把二进制转换成JSON的token，直接使用JSON.Deserializers。
+ * BYTES在读取时也可以作为base64字符串，与文本JSON中byte[]的表示一致。
+ */
+@SuppressWarnings("unchecked")
+public class BinaryJSON {
+    public static final byte NULL = 0;
+    public static final byte FALSE = 1;
+    public static final byte TRUE = 2;
+    public static final byte INT = 3;
+    public static final byte FLOAT = 4;
+    public static final byte DOUBLE = 5;
+    public static final byte STRING = 6;
+    public static final byte BYTES = 7;
+    public static final byte NUMBER = 8;// BigDecimal、BigInteger等，内容为数字的文本
+    public static final byte ARRAY = 9;
+    public static final byte OBJECT = 10;
+    public static final byte END = 11;
+
+    public static byte[] toBytes(Object obj) {
+        return toBytes(obj, BinarySerializers.forAny);
+    }
+
+    public static byte[] toBytes(Object obj, BinarySerializer serializer) {
+        Output out = new Output();
+        serializer.serialize(obj, out);
+        return out.toByteArray();
+    }
+
+    public static Object parse(byte[] bytes, int off, int len, Deserializer deserializer) {
+        BinaryJSONLex lex = new BinaryJSONLex(bytes, off, len);
+        lex.next();
+        return deserializer.deserialize(lex);
+    }
+
+    public static Object parse(byte[] bytes) {
+        return parse(bytes, 0, bytes.length, Deserializers.forDefault);
+    }
+
+    public static Object parseObject(byte[] bytes, Type type) {
+        return parse(bytes, 0, bytes.length, Deserializers.forType(type));
+    }
+
+    public static <T> T parseObject(byte[] bytes, Class<T> clazz) {
+        return (T) parseObject(bytes, (Type) clazz);
+    }
+
+    public interface BinarySerializer {
+        public void serialize(Object value, Output out);
+    }
+
+    /**
+     * 可扩容的字节输出，clear后可以复用
+     */
+    public static class Output {
+        protected byte[] buf;
+        protected int size;
+
+        public Output(int cap) {
+            buf = new byte[cap];
+        }
+
+        public Output() {
+            this(256);
+        }
+
+        public Output clear() {
+            size = 0;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte[] getLocalBytes() {
+            return buf;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        private void ensure(int addSize) {
+            if (size + addSize > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + addSize));
+        }
+
+        public Output write(byte b) {
+            ensure(1);
+            buf[size++] = b;
+            return this;
+        }
+
+        public Output write(byte[] bytes, int off, int len) {
+            ensure(len);
+            System.arraycopy(bytes, off, buf, size, len);
+            size += len;
+            return this;
+        }
+
+        public Output writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7fL) != 0) {
+                buf[size++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+            return this;
+        }
+
+        public Output writeInt(long v) {
+            write(INT);
+            return writeVarLong((v << 1) ^ (v >> 63));
+        }
+
+        public Output writeFloat(float v) {
+            ensure(5);
+            buf[size++] = FLOAT;
+            putInt(Float.floatToRawIntBits(v));
+            return this;
+        }
+
+        public Output writeDouble(double v) {
+            ensure(9);
+            buf[size++] = DOUBLE;
+            long bits = Double.doubleToRawLongBits(v);
+            putInt((int) (bits >>> 32));
+            putInt((int) bits);
+            return this;
+        }
+
+        private void putInt(int v) {
+            buf[size++] = (byte) (v >>> 24);
+            buf[size++] = (byte) (v >>> 16);
+            buf[size++] = (byte) (v >>> 8);
+            buf[size++] = (byte) v;
+        }
+
+        public Output writeBoolean(boolean v) {
+            return write(v ? TRUE : FALSE);
+        }
+
+        public Output writeBytes(byte[] bytes) {
+            write(BYTES);
+            writeVarLong(bytes.length);
+            return write(bytes, 0, bytes.length);
+        }
+
+        public Output writeNumber(String text) {
+            write(NUMBER);
+            writeVarLong(text.length());
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++)
+                buf[size++] = (byte) text.charAt(i);
+            return this;
+        }
+
+        /**
+         * 直接编码为UTF-8，无法配对的代理字符写为'?'
+         */
+        public Output writeString(CharSequence str) {
+            int len = str.length();
+            int utf8Length = len;
+            for (int i = 0; i < len; i++) {
+                char c = str.charAt(i);
+                if (c >= 0x80)
+                    utf8Length += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;// 代理对共4个字节
+            }
+            write(STRING);
+            writeVarLong(utf8Length);
+            ensure(utf8Length);
+            byte[] buf = this.buf;
+            int j = size;
+            for (int i = 0; i < len; i++) {
+                char c = str.charAt(i);
+                if (c < 0x80) {
+                    buf[j++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[j++] = (byte) (0xc0 | c >> 6);
+                    buf[j++] = (byte) (0x80 | c & 0x3f);
+                } else if (Character.isHighSurrogate(c) && i + 1 < len
+                        && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, str.charAt(++i));
+                    buf[j++] = (byte) (0xf0 | cp >> 18);
+                    buf[j++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                    buf[j++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                    buf[j++] = (byte) (0x80 | cp & 0x3f);
+                } else if (Character.isSurrogate(c)) {
+                    // 按2个字节计算了长度，用2个'?'补齐
+                    buf[j++] = '?';
+                    buf[j++] = '?';
+                } else {
+                    buf[j++] = (byte) (0xe0 | c >> 12);
+                    buf[j++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    buf[j++] = (byte) (0x80 | c & 0x3f);
+                }
+            }
+            size = j;
+            return this;
+        }
+    }
+
+    public static class BinaryGetterInfo {
+        public byte[] name;// 编码好的STRING
+        public Reflection.Getter getter;
+        public BinarySerializer serializer;
+    }
+
+    public static class BinarySerializers {
+        private static final Map<Type, BinarySerializer> serializers = new ConcurrentHashMap<>();
+        private static final Map<Type, BinarySerializer> builtins = new HashMap<>();
+
+        public static void add(BinarySerializer serializer, Type... types) {
+            for (Type type : types)
+                serializers.put(type, serializer);
+        }
+
+        private static void builtin(BinarySerializer serializer, Type... types) {
+            for (Type type : types)
+                builtins.put(type, serializer);
+        }
+
+        /**
+         * 用JSON.Serializer序列化成文本，再按解析结果写出，通过JSON.Serializers.add注册的类型用它编码，
+         * 与读取时使用的JSON.Deserializers对应
+         */
+        public static BinarySerializer forText(Serializer serializer) {
+            return (value, out) -> {
+                MyStringBuilder sb = new MyStringBuilder();
+                serializer.serialize(value, sb);
+                forAny.serialize(JSON.parse(sb.toString()), out);
+            };
+        }
+
+        public static BinarySerializer forString(Function<Object, CharSequence> mapper) {
+            return (value, out) -> out.writeString(mapper.apply(value));
+        }
+
+        private static void writeItem(BinarySerializer itemSerializer, Object item, Output out) {
+            if (item == null)
+                out.write(NULL);
+            else
+                itemSerializer.serialize(item, out);
+        }
+
+        public static BinarySerializer forArray(BinarySerializer itemSerializer) {
+            return (value, out) -> {
+                out.write(ARRAY);
+                if (value instanceof List) {
+                    List<?> list = (List<?>) value;
+                    for (int i = 0, n = list.size(); i < n; i++)
+                        writeItem(itemSerializer, list.get(i), out);
+                } else {
+                    for (int i = 0, n = Array.getLength(value); i < n; i++)
+                        writeItem(itemSerializer, Array.get(value, i), out);
+                }
+                out.write(END);
+            };
+        }
+
+        public static BinarySerializer forIterable(BinarySerializer itemSerializer) {
+            return (value, out) -> {
+                out.write(ARRAY);
+                for (Object item : (Iterable<?>) value)
+                    writeItem(itemSerializer, item, out);
+                out.write(END);
+            };
+        }
+
+        public static BinarySerializer forMap(BinarySerializer keySerializer,
+                BinarySerializer valueSerializer) {
+            return (value, out) -> {
+                out.write(OBJECT);
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                    Object v = e.getValue();
+                    if (v != null) {
+                        keySerializer.serialize(e.getKey(), out);
+                        valueSerializer.serialize(v, out);
+                    }
+                }
+                out.write(END);
+            };
+        }
+
+        public static BinarySerializer forBean(List<BinaryGetterInfo> getters) {
+            BinaryGetterInfo[] array = getters.toArray(new BinaryGetterInfo[0]);
+            return (value, out) -> {
+                out.write(OBJECT);
+                for (BinaryGetterInfo gi : array) {
+                    Object v;
+                    try {
+                        v = gi.getter.get(value);
+                    } catch (Exception e) {
+                        throw new JSONException(e);
+                    }
+                    if (v != null) {
+                        out.write(gi.name, 0, gi.name.length);
+                        gi.serializer.serialize(v, out);
+                    }
+                }
+                out.write(END);
+            };
+        }
+
+        public static BinarySerializer forBean(Type type) {
+            Class<?> clazz = JSON.ReflectionSupport.getRawType(type);
+            List<BinaryGetterInfo> getters = new ArrayList<>();
+            for (Map.Entry<String, Reflection.GetterInfo> e : JSON.ReflectionSupport
+                    .getGettersMap(clazz).entrySet()) {
+                Reflection.GetterInfo ogi = e.getValue();
+                BinaryGetterInfo gi = new BinaryGetterInfo();
+                gi.name = new Output().writeString(e.getKey()).toByteArray();
+                gi.getter = ogi.getter;
+                gi.serializer = forType(JSON.ReflectionSupport.calculateGenericType(type,
+                        ogi.member.getDeclaringClass(), ogi.type));
+                getters.add(gi);
+            }
+            return forBean(getters);
+        }
+
+        public static BinarySerializer forType(Type type) {
+            BinarySerializer serializer = serializers.get(type);
+            if (serializer == null) {
+                synchronized (BinarySerializers.class) {
+                    if ((serializer = serializers.get(type)) == null)
+                        serializers.put(type, serializer = forTypeWithoutCache(type));
+                }
+            }
+            return serializer;
+        }
+
+        private static BinarySerializer forTypeWithoutCache(Type type) {
+            Serializer custom = JSON.Serializers.getCustom(type);
+            if (custom != null)
+                return forText(custom);
+            BinarySerializer builtin = builtins.get(type);
+            if (builtin != null)
+                return builtin;
+            if (type instanceof Class) {
+                Class<?> clazz = (Class<?>) type;
+                if (clazz.isArray())
+                    return forArray(forType(clazz.getComponentType()));
+                return forGenericType(clazz, clazz);
+            } else if (type instanceof GenericArrayType) {
+                return forArray(forType(((GenericArrayType) type).getGenericComponentType()));
+            } else if (type instanceof ParameterizedType) {
+                ParameterizedType pt = (ParameterizedType) type;
+                return forGenericType((Class<?>) pt.getRawType(), type);
+            } else if (type instanceof TypeVariable) {
+                return forType(((TypeVariable<?>) type).getBounds()[0]);
+            } else if (type instanceof WildcardType) {
+                return forType(((WildcardType) type).getUpperBounds()[0]);
+            }
+            throw new UnsupportedOperationException();
+        }
+
+        private static BinarySerializer forGenericType(Class<?> rawType, Type type) {
+            if (List.class.isAssignableFrom(rawType))
+                return forArray(forType(
+                        JSON.ReflectionSupport.getGenericTypeMapping(type, List.class)[0]));
+            if (Iterable.class.isAssignableFrom(rawType))
+                return forIterable(forType(
+                        JSON.ReflectionSupport.getGenericTypeMapping(type, Iterable.class)[0]));
+            if (Map.class.isAssignableFrom(rawType)) {
+                Type[] types = JSON.ReflectionSupport.getGenericTypeMapping(type, Map.class);
+                return forMap(forType(types[0]), forType(types[1]));
+            }
+            return forBean(type);
+        }
+
+        /**
+         * 与JSON.Serializers.forDate相同，没有设置日期格式时写毫秒数
+         */
+        private static BinarySerializer forDate(Function<Object, Date> mapper) {
+            return (value, out) -> {
+                Date date = mapper.apply(value);
+                SimpleDateFormat fmt = JSON.Configure.get().dateFormat;
+                if (fmt == null)
+                    out.writeInt(date.getTime());
+                else
+                    out.writeString(fmt.format(date));
+            };
+        }
+
+        public static final BinarySerializer forNull = (value, out) -> out.write(NULL);
+        public static final BinarySerializer forToString = forString(Object::toString);
+        public static final BinarySerializer forAny = (value, out) -> (value == null ? forNull
+                : forType(value.getClass())).serialize(value, out);
+        static {
+            builtin((value, out) -> out.writeInt(((Number) value).longValue()), int.class,
+                    Integer.class, short.class, Short.class, byte.class, Byte.class, long.class,
+                    Long.class, AtomicInteger.class, AtomicLong.class);
+            builtin((value, out) -> out.writeFloat((float) value), float.class, Float.class);
+            builtin((value, out) -> out.writeDouble((double) value), double.class, Double.class);
+            builtin((value, out) -> out.writeBoolean((boolean) value), boolean.class, Boolean.class);
+            builtin((value, out) -> out.writeBoolean(((AtomicBoolean) value).get()),
+                    AtomicBoolean.class);
+            builtin(forString(v -> String.valueOf((char) v)), char.class, Character.class);
+            builtin(forString(v -> ((Class<?>) v).getName()), Class.class);
+            builtin((value, out) -> out.writeBytes((byte[]) value), byte[].class);
+            builtin(forString(v -> new String((char[]) v)), char[].class);
+            builtin(forDate(v -> (Date) v), Date.class, java.sql.Date.class, Timestamp.class);
+            builtin(forDate(v -> ((Calendar) v).getTime()), Calendar.class);
+            builtin((value, out) -> out.writeNumber(value.toString()), BigDecimal.class,
+                    BigInteger.class, Number.class);
+            builtin(forToString, CharSequence.class, String.class, File.class, StringBuffer.class,
+                    StringBuilder.class, MyStringBuilder.class, URI.class, URL.class,
+                    Pattern.class, Charset.class);
+            builtin(forAny, Object.class);
+        }
+    }
+
+    /**
+     * 把二进制值转换成JSON的token，对象中每个键之后补一个COLON，不产生COMMA
+     */
+    static class BinaryJSONLex implements JSON.JSONLex {
+        private byte[] buf;
+        private int index;
+        private int limit;
+        private int begin;// 当前token的类型字节的位置
+        private JSON.Key key;
+        private byte type;
+        private long longValue;
+        private float floatValue;
+        private double doubleValue;
+        private int dataBegin;// STRING、BYTES、NUMBER内容的开始位置
+        private int dataEnd;
+        private boolean[] objects = new boolean[16];// 每层容器是否为对象
+        private boolean[] expectingKey = new boolean[16];
+        private int depth;
+        private boolean pendingColon;
+
+        BinaryJSONLex(byte[] buf, int off, int len) {
+            this.buf = buf;
+            this.index = off;
+            this.limit = off + len;
+        }
+
+        @Override
+        public JSON.Key getKey() {
+            return key;
+        }
+
+        @Override
+        public JSON.Key next() {
+            if (pendingColon) {
+                pendingColon = false;
+                return key = JSON.Key.COLON;
+            }
+            begin = index;
+            if (index >= limit) {
+                type = -1;
+                return key = JSON.Key.EOF;
+            }
+            type = buf[index++];
+            boolean isKey = depth > 0 && objects[depth - 1] && expectingKey[depth - 1];
+            switch (type) {
+                case NULL:
+                    key = JSON.Key.NULL;
+                    break;
+                case FALSE:
+                    key = JSON.Key.FALSE;
+                    break;
+                case TRUE:
+                    key = JSON.Key.TRUE;
+                    break;
+                case INT: {
+                    long v = readVarLong();
+                    longValue = (v >>> 1) ^ -(v & 1);
+                    key = JSON.Key.NUM;
+                    break;
+                }
+                case FLOAT:
+                    require(4);
+                    floatValue = Float.intBitsToFloat(getInt(index));
+                    index += 4;
+                    key = JSON.Key.NUM;
+                    break;
+                case DOUBLE:
+                    require(8);
+                    doubleValue = Double.longBitsToDouble(
+                            (long) getInt(index) << 32 | getInt(index + 4) & 0xffffffffL);
+                    index += 8;
+                    key = JSON.Key.NUM;
+                    break;
+                case STRING:
+                case BYTES:
+                case NUMBER: {
+                    long len = readVarLong();
+                    if (len > limit - index)
+                        throw newError();
+                    dataBegin = index;
+                    dataEnd = index += (int) len;
+                    key = type == NUMBER ? JSON.Key.NUM : JSON.Key.LITERAL;
+                    break;
+                }
+                case ARRAY:
+                case OBJECT:
+                    if (isKey)
+                        throw newError();
+                    push(type == OBJECT);
+                    return key = type == OBJECT ? JSON.Key.LBB : JSON.Key.LMB;
+                case END:
+                    if (depth == 0 || objects[depth - 1] && !expectingKey[depth - 1])
+                        throw newError();
+                    key = objects[--depth] ? JSON.Key.RBB : JSON.Key.RMB;
+                    valueDone();
+                    return key;
+                default:
+                    key = null;
+                    throw newError();
+            }
+            if (isKey) {
+                expectingKey[depth - 1] = false;
+                pendingColon = true;
+            } else {
+                valueDone();
+            }
+            return key;
+        }
+
+        private void push(boolean object) {
+            if (depth == objects.length) {
+                objects = Arrays.copyOf(objects, depth * 2);
+                expectingKey = Arrays.copyOf(expectingKey, depth * 2);
+            }
+            objects[depth] = object;
+            expectingKey[depth] = true;
+            depth++;
+        }
+
+        private void valueDone() {
+            if (depth > 0 && objects[depth - 1])
+                expectingKey[depth - 1] = true;
+        }
+
+        private void require(int n) {
+            if (limit - index < n)
+                throw newError();
+        }
+
+        private int getInt(int i) {
+            return (buf[i] & 0xff) << 24 | (buf[i + 1] & 0xff) << 16 | (buf[i + 2] & 0xff) << 8
+                    | buf[i + 3] & 0xff;
+        }
+
+        private long readVarLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (index >= limit)
+                    throw newError();
+                byte b = buf[index++];
+                v |= (long) (b & 0x7f) << shift;
+                if (b >= 0)
+                    return v;
+            }
+            throw newError();
+        }
+
+        @Override
+        public RuntimeException newError() {
+            return new JSONException("Unexpected " + (key == null ? "type " + type : key)
+                    + " at " + begin);
+        }
+
+        @Override
+        public int matchField(JSON.FieldMatcher matcher) {
+            if (type != STRING)
+                return JSON.JSONLex.super.matchField(matcher);
+            int node = 0;
+            for (int i = dataBegin; i < dataEnd; i++) {
+                int b = buf[i];
+                if (b < 0)
+                    return matcher.match(getString());
+                if ((node = matcher.next(node, b)) == -1)
+                    return -1;
+            }
+            return matcher.getIndex(node);
+        }
+
+        /**
+         * 数值类型的文本形式，与文本JSON中的写法相同
+         */
+        @Override
+        public String getString() {
+            switch (type) {
+                case INT:
+                    return Long.toString(longValue);
+                case FLOAT:
+                    return Float.toString(floatValue);
+                case DOUBLE:
+                    return Double.toString(doubleValue);
+                case STRING:
+                    return new String(buf, dataBegin, dataEnd - dataBegin, StandardCharsets.UTF_8);
+                case NUMBER:
+                    return new String(buf, dataBegin, dataEnd - dataBegin,
+                            StandardCharsets.ISO_8859_1);
+                case BYTES:
+                    return new MyStringBuilder().appendBase64(getBase64()).toString();
+                default:
+                    return key.str;
+            }
+        }
+
+        @Override
+        public String getLiteralString() {
+            return getString();
+        }
+
+        @Override
+        public String getUnescapeString() {
+            return getString();
+        }
+
+        @Override
+        public char[] getCharArray() {
+            return getString().toCharArray();
+        }
+
+        @Override
+        public char[] getUnescapeCharArray() {
+            return getCharArray();
+        }
+
+        @Override
+        public byte[] getBase64() {
+            if (type == BYTES)
+                return Arrays.copyOfRange(buf, dataBegin, dataEnd);
+            String str = getString();
+            return str.isEmpty() ? new byte[0] : Strings.decodeBase64(str, 0, str.length());
+        }
+
+        @Override
+        public char getUnescapeChar() {
+            return getString().charAt(0);
+        }
+
+        @Override
+        public int getInt() {
+            return (int) getLong();
+        }
+
+        @Override
+        public int getLiteralInt() {
+            MyStringBuilder sb = text();
+            return Numbers.parseIntWithRadix(sb, 0, sb.length() - 1);
+        }
+
+        @Override
+        public long getLong() {
+            switch (type) {
+                case INT:
+                    return longValue;
+                case FLOAT:
+                    return (long) floatValue;
+                case DOUBLE:
+                    return (long) doubleValue;
+                default:
+                    return getLiteralLong();
+            }
+        }
+
+        @Override
+        public long getLiteralLong() {
+            MyStringBuilder sb = text();
+            return Numbers.parseLongWithRadix(sb, 0, sb.length() - 1);
+        }
+
+        @Override
+        public float getFloat() {
+            return type == FLOAT ? floatValue : (float) getDouble();
+        }
+
+        /**
+         * FLOAT按文本形式转换为double，与解析文本JSON得到的值相同
+         */
+        @Override
+        public double getDouble() {
+            switch (type) {
+                case INT:
+                    return longValue;
+                case DOUBLE:
+                    return doubleValue;
+                default:
+                    return Double.parseDouble(getString());
+            }
+        }
+
+        @Override
+        public Number getNumber() {
+            switch (type) {
+                case INT:
+                    return longValue;
+                case FLOAT:
+                case DOUBLE:
+                    return getDouble();
+                default:
+                    return getLiteralNumber();
+            }
+        }
+
+        @Override
+        public Number getLiteralNumber() {
+            MyStringBuilder sb = text();
+            return Numbers.parseDeclareNumber(sb, 0, sb.length() - 1);
+        }
+
+        /**
+         * 末尾多放一个空格，Numbers的解析方法会越过结尾检查进制前缀
+         */
+        private MyStringBuilder text() {
+            return new MyStringBuilder().append(getString()).append(' ');
+        }
+    }
+}
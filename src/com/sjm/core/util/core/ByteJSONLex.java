@@ -0,0 +1,368 @@
+package com.sjm.core.util.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.sjm.core.util.core.JSON.JSONException;
+import com.sjm.core.util.core.JSON.Key;
+
+/**
+ * 直接读取UTF-8字节的JSONLex，词法与StringJSONLex相同
+ *
+ * 数据来自InputStream或ByteBuffer（包括内存映射文件），只在滑动窗口中保留当前token，
+ * 窗口只在单个token比窗口还长时扩大。堆内ByteBuffer直接在其数组上扫描，不拷贝。
+ */
+class ByteJSONLex implements JSON.JSONLex {
+    static final int DEFAULT_WINDOW_SIZE = 8192;
+
+    private InputStream in;
+    private ByteBuffer src;
+    protected byte[] buf;
+    protected int begin;// 当前token的开始位置
+    protected int index;// 当前token的结束位置
+    protected int limit;// buf中有效数据的结束位置
+    protected long offset;// buf[0]在整个输入中的偏移，用于错误信息
+    protected boolean eof;
+    protected boolean escaped;// 当前LITERAL中含有转义字符
+    protected Key key;
+    private MyStringBuilder buffer = new MyStringBuilder();
+
+    public ByteJSONLex(InputStream in, int windowSize) {
+        this.in = in;
+        this.buf = new byte[windowSize];
+    }
+
+    public ByteJSONLex(InputStream in) {
+        this(in, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * 不修改src的position
+     */
+    public ByteJSONLex(ByteBuffer src, int windowSize) {
+        if (src.hasArray()) {
+            buf = src.array();
+            begin = index = src.arrayOffset() + src.position();
+            limit = src.arrayOffset() + src.limit();
+            offset = -index;
+            eof = true;
+        } else {
+            this.src = src.duplicate();
+            this.buf = new byte[Math.min(windowSize, Math.max(src.remaining(), 16))];
+        }
+    }
+
+    public ByteJSONLex(ByteBuffer src) {
+        this(src, DEFAULT_WINDOW_SIZE);
+    }
+
+    public ByteJSONLex(byte[] bytes, int off, int len) {
+        this(ByteBuffer.wrap(bytes, off, len));
+    }
+
+    /**
+     * 丢弃当前token之前的数据后继续读取，窗口已满时扩大
+     *
+     * @return false表示没有更多数据
+     */
+    protected boolean fill() {
+        if (eof)
+            return false;
+        if (begin > 0) {
+            System.arraycopy(buf, begin, buf, 0, limit - begin);
+            offset += begin;
+            index -= begin;
+            limit -= begin;
+            begin = 0;
+        }
+        if (limit == buf.length)
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        int n;
+        if (src != null) {
+            n = Math.min(src.remaining(), buf.length - limit);
+            src.get(buf, limit, n);
+            if (!src.hasRemaining())
+                eof = true;
+        } else {
+            try {
+                n = in.read(buf, limit, buf.length - limit);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+        }
+        limit += n;
+        return n > 0 || fill();
+    }
+
+    /**
+     * @return index之后第ahead个字节，没有时返回-1
+     */
+    private int peek(int ahead) {
+        while (index + ahead >= limit) {
+            if (!fill())
+                return -1;
+        }
+        return buf[index + ahead] & 0xff;
+    }
+
+    @Override
+    public Key getKey() {
+        return key;
+    }
+
+    @Override
+    public Key next() {
+        int c;
+        while (isWhitespace(c = peek(0)))
+            index++;
+        begin = index;
+        if (c < 0)
+            return key = Key.EOF;
+        switch (c) {
+            case '{':
+                index++;
+                return key = Key.LBB;
+            case '}':
+                index++;
+                return key = Key.RBB;
+            case '[':
+                index++;
+                return key = Key.LMB;
+            case ']':
+                index++;
+                return key = Key.RMB;
+            case ',':
+                index++;
+                return key = Key.COMMA;
+            case ':':
+                index++;
+                return key = Key.COLON;
+            case '"':
+            case '\'':
+                scanLiteral((byte) c);
+                return key = Key.LITERAL;
+            default:
+                if (c == '-' || isDigit(c)) {
+                    scanNumber();
+                    return key = Key.NUM;
+                }
+                if (isLetter(c)) {
+                    scanText();
+                    return key;
+                }
+                key = null;
+                throw newError();
+        }
+    }
+
+    private static final long BACKSLASH = ByteScanner.pattern('\\');
+    private static final long DOUBLE_QUOTE = ByteScanner.pattern('\"');
+    private static final long SINGLE_QUOTE = ByteScanner.pattern('\'');
+
+    /**
+     * 用ByteScanner每次跳过8个不是引号和'\\'的字节
+     */
+    private void scanLiteral(byte quote) {
+        escaped = false;
+        index++;
+        long pattern = quote == '"' ? DOUBLE_QUOTE : SINGLE_QUOTE;
+        while (true) {
+            if (index >= limit && !fill())
+                throw newError();
+            int i = ByteScanner.indexOf(buf, index, limit, pattern, BACKSLASH);
+            if (i < 0) {
+                index = limit;
+                continue;
+            }
+            index = i + 1;
+            if (buf[i] == quote)
+                return;
+            escaped = true;
+            if (index >= limit && !fill())
+                throw newError();
+            index++;
+        }
+    }
+
+    private void scanNumber() {
+        if (peek(0) == '-')
+            index++;
+        if (!isDigit(peek(0)))
+            throw newError();
+        while (isDigit(peek(0)))
+            index++;
+        if (peek(0) == '.' && isDigit(peek(1))) {
+            index++;
+            while (isDigit(peek(0)))
+                index++;
+        }
+        int c = peek(0);
+        if (c == 'e' || c == 'E') {
+            int sign = peek(1) == '+' || peek(1) == '-' ? 1 : 0;
+            if (isDigit(peek(1 + sign))) {
+                index += 1 + sign;
+                while (isDigit(peek(0)))
+                    index++;
+            }
+        }
+    }
+
+    private static final Key[] KEYWORDS = {Key.TRUE, Key.FALSE, Key.NULL};
+
+    private void scanText() {
+        int c;
+        while (isLetter(c = peek(0)) || isDigit(c))
+            index++;
+        key = Key.TEXT;
+        int len = index - begin;
+        for (Key keyword : KEYWORDS) {
+            String str = keyword.str;
+            if (str.length() == len && matches(str)) {
+                key = keyword;
+                return;
+            }
+        }
+    }
+
+    private boolean matches(String str) {
+        for (int i = 0; i < str.length(); i++)
+            if (buf[begin + i] != str.charAt(i))
+                return false;
+        return true;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f';
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+    }
+
+    @Override
+    public RuntimeException newError() {
+        int from = Math.max(0, index - 10), to = Math.min(limit, index + 10);
+        return new JSONException("Unexpected " + (key == null ? "char" : key) + " at "
+                + (offset + index) + ": "
+                + new String(buf, from, index - from, StandardCharsets.UTF_8) + "<<<<<<"
+                + new String(buf, index, to - index, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 把ASCII的token拷贝到buffer，末尾多放一个空格，Numbers的解析方法会越过结尾检查进制前缀
+     */
+    private MyStringBuilder ascii(int from, int to) {
+        MyStringBuilder sb = buffer.clear();
+        for (int i = from; i < to; i++)
+            sb.append((char) buf[i]);
+        sb.append(' ');
+        return sb;
+    }
+
+    private String unescape(int from, int to) {
+        String str = new String(buf, from, to - from, StandardCharsets.UTF_8);
+        if (!escaped)
+            return str;
+        return buffer.clear().appendUnEscape(str, 0, str.length()).toString();
+    }
+
+    @Override
+    public String getString() {
+        return new String(buf, begin, index - begin, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int matchField(JSON.FieldMatcher matcher) {
+        if (key != Key.LITERAL || escaped)
+            return JSON.JSONLex.super.matchField(matcher);
+        int node = 0;
+        for (int i = begin + 1, end = index - 1; i < end; i++) {
+            int b = buf[i];
+            if (b < 0)// 非ASCII
+                return matcher.match(getLiteralString());
+            if ((node = matcher.next(node, b)) == -1)
+                return -1;
+        }
+        return matcher.getIndex(node);
+    }
+
+    @Override
+    public String getLiteralString() {
+        return new String(buf, begin + 1, index - begin - 2, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getUnescapeString() {
+        return unescape(begin + 1, index - 1);
+    }
+
+    @Override
+    public char[] getCharArray() {
+        return getString().toCharArray();
+    }
+
+    @Override
+    public char[] getUnescapeCharArray() {
+        return getUnescapeString().toCharArray();
+    }
+
+    @Override
+    public byte[] getBase64() {
+        if (index - begin == 2)
+            return new byte[0];
+        MyStringBuilder sb = ascii(begin + 1, index - 1);
+        return Strings.decodeBase64(sb, 0, sb.length() - 1);
+    }
+
+    @Override
+    public char getUnescapeChar() {
+        return getUnescapeString().charAt(0);
+    }
+
+    @Override
+    public int getInt() {
+        MyStringBuilder sb = ascii(begin, index);
+        return Numbers.parseIntWithRadix(sb, 0, sb.length() - 1);
+    }
+
+    @Override
+    public int getLiteralInt() {
+        MyStringBuilder sb = ascii(begin + 1, index - 1);
+        return Numbers.parseIntWithRadix(sb, 0, sb.length() - 1);
+    }
+
+    @Override
+    public long getLong() {
+        MyStringBuilder sb = ascii(begin, index);
+        return Numbers.parseLongWithRadix(sb, 0, sb.length() - 1);
+    }
+
+    @Override
+    public long getLiteralLong() {
+        MyStringBuilder sb = ascii(begin + 1, index - 1);
+        return Numbers.parseLongWithRadix(sb, 0, sb.length() - 1);
+    }
+
+    @Override
+    public Number getNumber() {
+        MyStringBuilder sb = ascii(begin, index);
+        return Numbers.parseDeclareNumber(sb, 0, sb.length() - 1);
+    }
+
+    @Override
+    public Number getLiteralNumber() {
+        MyStringBuilder sb = ascii(begin + 1, index - 1);
+        return Numbers.parseDeclareNumber(sb, 0, sb.length() - 1);
+    }
+}
@@ -0,0 +1,56 @@
+package com.sjm.core.util.core;
+
+/**
+ * 在字节数组中按8字节一组查找指定字节：一次拼出一个long，用SWAR位运算同时比较8个字节
+ *
+ * long按小端序用移位拼出，低地址的字节在低位，因此最低的匹配位就是第一个匹配的位置。
+ * 不使用ByteBuffer.getLong，堆内ByteBuffer在Java 8上是逐字节读取的。
+ */
+public class ByteScanner {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    /**
+     * @return 每个字节都是b的long，作为indexOf的pattern参数
+     */
+    public static long pattern(int b) {
+        return (b & 0xffL) * ONES;
+    }
+
+    private static long getLong(byte[] bytes, int i) {
+        return (bytes[i] & 0xffL) | (bytes[i + 1] & 0xffL) << 8 | (bytes[i + 2] & 0xffL) << 16
+                | (bytes[i + 3] & 0xffL) << 24 | (bytes[i + 4] & 0xffL) << 32
+                | (bytes[i + 5] & 0xffL) << 40 | (bytes[i + 6] & 0xffL) << 48
+                | (long) bytes[i + 7] << 56;
+    }
+
+    /**
+     * 等于pattern的字节最高位置1；最低的置位一定是真实的匹配，更高的位可能因借位误报
+     */
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return (x - ONES) & ~x & HIGHS;
+    }
+
+    /**
+     * 查找[from,to)中第一个等于p1或p2的字节
+     *
+     * @return 找不到时返回-1
+     */
+    public static int indexOf(byte[] bytes, int from, int to, long p1, long p2) {
+        int i = from;
+        for (int last = to - 8; i <= last; i += 8) {
+            long word = getLong(bytes, i);
+            long m = matches(word, p1) | matches(word, p2);
+            if (m != 0)
+                return i + (Long.numberOfTrailingZeros(m) >>> 3);
+        }
+        byte b1 = (byte) p1, b2 = (byte) p2;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b == b1 || b == b2)
+                return i;
+        }
+        return -1;
+    }
+}
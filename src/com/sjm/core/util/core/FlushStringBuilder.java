@@ -0,0 +1,197 @@
+package com.sjm.core.util.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import com.sjm.core.util.core.JSON.JSONException;
+
+/**
+ * 固定大小的MyStringBuilder，写满时把内容刷出到输出，而不是扩容
+ *
+ * 刷出时保留最后一个字符（以及可能被拆开的代理对），保证序列化器的deleteEnd依然有效；length()返回的是已写出的总长度。
+ * 字符数组和字节数组按线程复用。
+ */
+abstract class FlushStringBuilder extends MyStringBuilder {
+    static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<char[]> charsLocal = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> bytesLocal = new ThreadLocal<>();
+
+    protected long flushed;// 已刷出的字符数
+
+    FlushStringBuilder() {
+        super(0);
+        buf = take(charsLocal);
+        if (buf == null)
+            buf = new char[BUFFER_SIZE];
+    }
+
+    private static <T> T take(ThreadLocal<T> local) {
+        T value = local.get();
+        if (value != null)
+            local.set(null);// 嵌套调用时不共用
+        return value;
+    }
+
+    protected abstract void write(char[] chars, int off, int len) throws IOException;
+
+    @Override
+    public void resize(int addSize) {
+        if (size + addSize > buf.length) {
+            int keep = size > 1 && Character.isHighSurrogate(buf[size - 2]) ? 2 : 1;
+            if (size > keep)
+                flush(size - keep);
+            if (size + addSize > buf.length)
+                super.resize(addSize);
+        }
+    }
+
+    private void flush(int len) {
+        try {
+            write(buf, 0, len);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        System.arraycopy(buf, len, buf, 0, size - len);
+        size -= len;
+        flushed += len;
+    }
+
+    @Override
+    public int length() {
+        return (int) (flushed + size);
+    }
+
+    @Override
+    public MyStringBuilder deleteEnd(int len) {
+        if (len > size)
+            throw new IllegalStateException("Already flushed");
+        return super.deleteEnd(len);
+    }
+
+    /**
+     * 刷出剩余内容
+     */
+    public void finish() throws IOException {
+        if (size > 0)
+            write(buf, 0, size);
+        flushed += size;
+        size = 0;
+    }
+
+    /**
+     * 归还缓冲区，写出失败时也要调用，之后不能再使用
+     */
+    public void release() {
+        if (buf.length == BUFFER_SIZE)
+            charsLocal.set(buf);
+    }
+
+    static class WriterBuilder extends FlushStringBuilder {
+        private Writer writer;
+
+        WriterBuilder(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        protected void write(char[] chars, int off, int len) throws IOException {
+            writer.write(chars, off, len);
+        }
+    }
+
+    /**
+     * 直接编码为UTF-8，无法配对的代理字符写为'?'
+     */
+    static abstract class UTF8Builder extends FlushStringBuilder {
+        protected byte[] bytes;
+
+        UTF8Builder() {
+            bytes = take(bytesLocal);
+            if (bytes == null)
+                bytes = new byte[BUFFER_SIZE * 3];
+        }
+
+        protected abstract void writeBytes(byte[] bytes, int len) throws IOException;
+
+        @Override
+        protected void write(char[] chars, int off, int len) throws IOException {
+            int end = off + len;
+            while (off < end) {
+                // 每个char最多编码为3个字节，代理对4个字节
+                int n = Math.min(end - off, bytes.length / 3);
+                if (n < end - off && Character.isHighSurrogate(chars[off + n - 1]))
+                    n--;
+                writeBytes(bytes, encode(chars, off, off + n, bytes));
+                off += n;
+            }
+        }
+
+        private static int encode(char[] chars, int off, int end, byte[] bytes) {
+            int j = 0;
+            for (int i = off; i < end; i++) {
+                char c = chars[i];
+                if (c < 0x80) {
+                    bytes[j++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[j++] = (byte) (0xc0 | c >> 6);
+                    bytes[j++] = (byte) (0x80 | c & 0x3f);
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < end
+                            && Character.isLowSurrogate(chars[i + 1])) {
+                        int cp = Character.toCodePoint(c, chars[++i]);
+                        bytes[j++] = (byte) (0xf0 | cp >> 18);
+                        bytes[j++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                        bytes[j++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                        bytes[j++] = (byte) (0x80 | cp & 0x3f);
+                    } else {
+                        bytes[j++] = '?';
+                    }
+                } else {
+                    bytes[j++] = (byte) (0xe0 | c >> 12);
+                    bytes[j++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    bytes[j++] = (byte) (0x80 | c & 0x3f);
+                }
+            }
+            return j;
+        }
+
+        @Override
+        public void release() {
+            super.release();
+            if (bytes.length == BUFFER_SIZE * 3)
+                bytesLocal.set(bytes);
+        }
+    }
+
+    static class OutputStreamBuilder extends UTF8Builder {
+        private OutputStream out;
+
+        OutputStreamBuilder(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        protected void writeBytes(byte[] bytes, int len) throws IOException {
+            out.write(bytes, 0, len);
+        }
+    }
+
+    static class ByteBufferBuilder extends UTF8Builder {
+        private ByteBuffer buffer;
+
+        ByteBufferBuilder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        protected void writeBytes(byte[] bytes, int len) {
+            if (buffer.remaining() < len)
+                throw new BufferOverflowException();
+            buffer.put(bytes, 0, len);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.sjm.core.util.core;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -10,24 +14,34 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -45,12 +59,80 @@ public class JSON {
         return sb.toString();
     }
 
+    /**
+     * 序列化并以UTF-8直接写入out，经固定大小的缓冲区分段刷出；结束时flush但不关闭out
+     */
+    public static void writeTo(Object obj, OutputStream out) throws IOException {
+        writeTo(obj, new FlushStringBuilder.OutputStreamBuilder(out));
+        out.flush();
+    }
+
+    public static void writeTo(Object obj, Writer writer) throws IOException {
+        writeTo(obj, new FlushStringBuilder.WriterBuilder(writer));
+        writer.flush();
+    }
+
+    /**
+     * 以UTF-8写入buffer，空间不足时抛出BufferOverflowException，此时buffer中只有部分内容
+     */
+    public static void writeTo(Object obj, ByteBuffer buffer) {
+        try {
+            writeTo(obj, new FlushStringBuilder.ByteBufferBuilder(buffer));
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    private static void writeTo(Object obj, FlushStringBuilder sb) throws IOException {
+        writeTo(obj, Serializers.forAny, sb);
+    }
+
+    private static void writeTo(Object obj, Serializer serializer, FlushStringBuilder sb)
+            throws IOException {
+        try {
+            serializer.serialize(obj, sb);
+            sb.finish();
+        } catch (JSONException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
+        } finally {
+            sb.release();
+        }
+    }
+
     public static Object parse(String str, Deserializer deserializer) {
         StringJSONLex lex = new StringJSONLex();
         lex.resetAndNext(str);
         return deserializer.deserialize(lex);
     }
 
+    /**
+     * 解析UTF-8编码的JSON，直接在数组上扫描，不解码为String
+     */
+    public static Object parse(byte[] bytes, int off, int len, Deserializer deserializer) {
+        return parse(new ByteJSONLex(bytes, off, len), deserializer);
+    }
+
+    /**
+     * 边读边解析UTF-8编码的JSON，只缓存当前token所在的窗口；不关闭in
+     */
+    public static Object parse(InputStream in, Deserializer deserializer) {
+        return parse(new ByteJSONLex(in), deserializer);
+    }
+
+    /**
+     * 解析ByteBuffer中UTF-8编码的JSON，可以是内存映射文件；不修改buffer的position
+     */
+    public static Object parse(ByteBuffer buffer, Deserializer deserializer) {
+        return parse(new ByteJSONLex(buffer), deserializer);
+    }
+
+    private static Object parse(JSONLex lex, Deserializer deserializer) {
+        lex.next();
+        return deserializer.deserialize(lex);
+    }
+
     public static Object parse(String str) {
         return parse(str, Deserializers.forDefault);
     }
@@ -67,15 +149,253 @@ public class JSON {
         return (T) parseObject(str, (Type) clazz);
     }
 
+    public static Object parseObject(InputStream in, Type type) {
+        return parse(in, Deserializers.forType(type));
+    }
+
+    public static <T> T parseObject(InputStream in, Class<T> clazz) {
+        return (T) parseObject(in, (Type) clazz);
+    }
+
+    public static Object parseObject(ByteBuffer buffer, Type type) {
+        return parse(buffer, Deserializers.forType(type));
+    }
+
     public static List<Object> parseArray(String str) {
         return (List<Object>) parse(str, Deserializers.forDefaultList);
     }
 
+    /**
+     * 延迟解析：只扫描一遍记录各个值的位置，对象和数组返回只读的Map/List视图，访问时才解码，
+     * 没有访问的部分不会创建对象。视图不是线程安全的
+     */
+    public static Object parseLazy(String str) {
+        return LazyJSON.parse(str);
+    }
+
+    public static Map<String, Object> parseLazyObject(String str) {
+        return LazyJSON.parseObject(str);
+    }
+
+    public static List<Object> parseLazyArray(String str) {
+        return LazyJSON.parseArray(str);
+    }
+
     public static <T> List<T> parseArray(String str, Class<T> clazz) {
         return (List<T>) parse(str,
                 Deserializers.forCollection(ArrayList::new, Deserializers.forType(clazz)));
     }
 
+    public static <T> List<T> parseArray(InputStream in, Class<T> clazz) {
+        return (List<T>) parse(in,
+                Deserializers.forCollection(ArrayList::new, Deserializers.forType(clazz)));
+    }
+
+    /**
+     * 逐个解析顶层数组的元素，不构造整个List；不关闭in
+     */
+    public static <T> Iterator<T> iterateArray(InputStream in, Class<T> clazz) {
+        return iterateArray(in, null, clazz);
+    }
+
+    /**
+     * 逐个解析path指向的数组的元素，path为以'.'分隔的对象字段名，为null或空时表示顶层数组
+     */
+    public static <T> Iterator<T> iterateArray(InputStream in, String path, Type type) {
+        return new ArrayIterator<>(new ByteJSONLex(in), path, Deserializers.forType(type));
+    }
+
+    public static <T> Iterator<T> iterateArray(ByteBuffer buffer, String path, Type type) {
+        return new ArrayIterator<>(new ByteJSONLex(buffer), path, Deserializers.forType(type));
+    }
+
+    public static <T> Stream<T> streamArray(InputStream in, Class<T> clazz) {
+        return streamArray(in, null, clazz);
+    }
+
+    public static <T> Stream<T> streamArray(InputStream in, String path, Type type) {
+        Iterator<T> it = iterateArray(in, path, type);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED),
+                false);
+    }
+
+    /**
+     * 只抽取paths匹配的值，见{@link JSONPath}；每次调用都编译路径，重复使用同一组路径时用JSONPath.compile保存
+     */
+    public static Map<String, List<Object>> extract(String str, String... paths) {
+        return JSONPath.compile(paths).extract(str);
+    }
+
+    /**
+     * 不关闭in，所有路径都找到后不再读取
+     */
+    public static Map<String, List<Object>> extract(InputStream in, String... paths) {
+        return JSONPath.compile(paths).extract(in);
+    }
+
+    /**
+     * 预先解析type的整个序列化/反序列化图（嵌套的泛型、集合、bean字段、Serializers.add注册的实现），
+     * 返回的TypePlan线程安全，可以保存复用，调用时不再按类型查找。
+     * 日期格式取自编译时当前线程的Configure，编译进TypePlan自己的日期实现中，之后调用线程的Configure不影响该TypePlan
+     */
+    public static <T> TypePlan<T> compile(Type type) {
+        PlanResolver resolver = new PlanResolver(Configure.get().dateFormat);
+        return new TypePlan<>(type, new JSONReader<>(resolver.deserializer(type)),
+                new JSONWriter<>(resolver.serializer(type)));
+    }
+
+    public static <T> TypePlan<T> compile(Class<T> clazz) {
+        return compile((Type) clazz);
+    }
+
+    public static class TypePlan<T> {
+        public final Type type;
+        public final JSONReader<T> reader;
+        public final JSONWriter<T> writer;
+
+        public TypePlan(Type type, JSONReader<T> reader, JSONWriter<T> writer) {
+            this.type = type;
+            this.reader = reader;
+            this.writer = writer;
+        }
+    }
+
+    /**
+     * TypePlan自己的类型解析，与Serializers/Deserializers的规则相同，但结果缓存在这里，不与全局缓存共享：
+     * 没有被add替换的日期类型使用绑定了编译时日期格式的实现，每个线程一个副本（SimpleDateFormat不是线程安全的）
+     */
+    static class PlanResolver {
+        private final Map<Type, Serializer> serializers = new ConcurrentHashMap<>();
+        private final Map<Type, Deserializer> deserializers = new ConcurrentHashMap<>();
+
+        PlanResolver(SimpleDateFormat dateFormat) {
+            Supplier<SimpleDateFormat> format;
+            if (dateFormat == null) {
+                format = () -> null;
+            } else {
+                SimpleDateFormat snapshot = (SimpleDateFormat) dateFormat.clone();
+                format = ThreadLocal.withInitial(() -> (SimpleDateFormat) snapshot.clone())::get;
+            }
+            serializers.putAll(Serializers.added);
+            Serializers.forDates(format).forEach((type, serializer) -> {
+                if (Serializers.getCustom(type) == null)
+                    serializers.put(type, serializer);
+            });
+            if (Serializers.getCustom(Object.class) == null)
+                serializers.put(Object.class, (value, sb) -> (value == null ? Serializers.forNull
+                        : serializer(value.getClass())).serialize(value, sb));
+            deserializers.putAll(Deserializers.added);
+            Deserializers.forDates(format).forEach((type, deserializer) -> {
+                if (Deserializers.getCustom(type) == null)
+                    deserializers.put(type, deserializer);
+            });
+        }
+
+        Serializer serializer(Type type) {
+            Serializer serializer = serializers.get(type);
+            if (serializer == null) {
+                synchronized (this) {
+                    if ((serializer = serializers.get(type)) == null)
+                        serializers.put(type, serializer =
+                                Serializers.forTypeWithoutCache(type, this::serializer));
+                }
+            }
+            return serializer;
+        }
+
+        Deserializer deserializer(Type type) {
+            Deserializer deserializer = deserializers.get(type);
+            if (deserializer == null) {
+                synchronized (this) {
+                    if ((deserializer = deserializers.get(type)) == null)
+                        deserializers.put(type, deserializer =
+                                Deserializers.forTypeWithoutCache(type, this::deserializer));
+                }
+            }
+            return deserializer;
+        }
+    }
+
+    public static class JSONReader<T> {
+        private final Deserializer deserializer;
+
+        public JSONReader(Deserializer deserializer) {
+            this.deserializer = deserializer;
+        }
+
+        public T read(String str) {
+            return (T) parse(str, deserializer);
+        }
+
+        public T read(byte[] bytes) {
+            return read(bytes, 0, bytes.length);
+        }
+
+        public T read(byte[] bytes, int off, int len) {
+            return (T) parse(bytes, off, len, deserializer);
+        }
+
+        public T read(InputStream in) {
+            return (T) parse(in, deserializer);
+        }
+
+        public T read(ByteBuffer buffer) {
+            return (T) parse(buffer, deserializer);
+        }
+
+        public Deserializer getDeserializer() {
+            return deserializer;
+        }
+    }
+
+    public static class JSONWriter<T> {
+        private final Serializer serializer;
+
+        public JSONWriter(Serializer serializer) {
+            this.serializer = serializer;
+        }
+
+        /**
+         * null写为null，不经过serializer
+         */
+        public void write(T value, MyStringBuilder sb) {
+            nullable(value).serialize(value, sb);
+        }
+
+        public String write(T value) {
+            MyStringBuilder sb = new MyStringBuilder();
+            write(value, sb);
+            return sb.toString();
+        }
+
+        public void writeTo(T value, OutputStream out) throws IOException {
+            JSON.writeTo(value, nullable(value), new FlushStringBuilder.OutputStreamBuilder(out));
+            out.flush();
+        }
+
+        public void writeTo(T value, Writer writer) throws IOException {
+            JSON.writeTo(value, nullable(value), new FlushStringBuilder.WriterBuilder(writer));
+            writer.flush();
+        }
+
+        public void writeTo(T value, ByteBuffer buffer) {
+            try {
+                JSON.writeTo(value, nullable(value),
+                        new FlushStringBuilder.ByteBufferBuilder(buffer));
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+        }
+
+        private Serializer nullable(T value) {
+            return value == null ? Serializers.forNull : serializer;
+        }
+
+        public Serializer getSerializer() {
+            return serializer;
+        }
+    }
+
     public static enum Key {
         EOF, TEXT, NUM, LITERAL, //
         TRUE("true"), FALSE("false"), NULL("null"), //
@@ -122,6 +442,91 @@ public class JSON {
         public Deserializer deserializer;
     }
 
+    /**
+     * 字段名到下标的匹配器，ASCII字段名构造成trie，由JSONLex直接在自己的缓冲区上逐字符匹配，不创建String；
+     * 含转义或非ASCII字符的key退回到Map查找
+     */
+    public static class FieldMatcher {
+        private char[] mins;// 每个节点子表的起始字符
+        private int[][] tables;// 每个节点的子节点表，-1表示没有
+        private int[] indexes;// 每个节点对应的字段下标，-1表示不是字段名的结尾
+        private Map<String, Integer> indexMap = new HashMap<>();
+
+        public FieldMatcher(List<String> names) {
+            List<Map<Character, Integer>> children = new ArrayList<>();
+            List<Integer> values = new ArrayList<>();
+            children.add(new HashMap<>());
+            values.add(-1);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                indexMap.put(name, i);
+                if (!isAscii(name))
+                    continue;
+                int node = 0;
+                for (int j = 0; j < name.length(); j++) {
+                    Integer child = children.get(node).get(name.charAt(j));
+                    if (child == null) {
+                        child = children.size();
+                        children.get(node).put(name.charAt(j), child);
+                        children.add(new HashMap<>());
+                        values.add(-1);
+                    }
+                    node = child;
+                }
+                values.set(node, i);
+            }
+            int count = children.size();
+            mins = new char[count];
+            tables = new int[count][];
+            indexes = new int[count];
+            for (int node = 0; node < count; node++) {
+                Map<Character, Integer> map = children.get(node);
+                indexes[node] = values.get(node);
+                if (map.isEmpty()) {
+                    tables[node] = new int[0];
+                    continue;
+                }
+                char min = Collections.min(map.keySet()), max = Collections.max(map.keySet());
+                int[] table = new int[max - min + 1];
+                Arrays.fill(table, -1);
+                for (Map.Entry<Character, Integer> e : map.entrySet())
+                    table[e.getKey() - min] = e.getValue();
+                mins[node] = min;
+                tables[node] = table;
+            }
+        }
+
+        private static boolean isAscii(String name) {
+            for (int i = 0; i < name.length(); i++)
+                if (name.charAt(i) >= 0x80)
+                    return false;
+            return true;
+        }
+
+        /**
+         * 从根节点0开始，c必须是ASCII字符
+         *
+         * @return 下一个节点，-1表示没有字段名以此为前缀
+         */
+        public int next(int node, int c) {
+            int[] table = tables[node];
+            int i = c - mins[node];
+            return i >= 0 && i < table.length ? table[i] : -1;
+        }
+
+        public int getIndex(int node) {
+            return indexes[node];
+        }
+
+        /**
+         * @return 字段下标，-1表示没有该字段
+         */
+        public int match(String name) {
+            Integer index = indexMap.get(name);
+            return index == null ? -1 : index;
+        }
+    }
+
     public static class JSONException extends RuntimeException {
         private static final long serialVersionUID = 1L;
 
@@ -143,11 +548,31 @@ public class JSON {
     }
 
     public static class Serializers {
-        private static final Map<Type, Serializer> serializers = new HashMap<>();
+        private static final Map<Type, Serializer> serializers = new ConcurrentHashMap<>();
+        private static final Map<Type, Serializer> added = new ConcurrentHashMap<>();// 通过add注册的实现
+        private static final Map<Type, Serializer> builtins;
 
         public static void add(Serializer serializer, Type... types) {
-            for (Type type : types)
+            for (Type type : types) {
                 serializers.put(type, serializer);
+                added.put(type, serializer);
+            }
+        }
+
+        /**
+         * type当前的实现是否仍是内置的，没有被add替换
+         */
+        static boolean isBuiltin(Type type) {
+            Serializer serializer = serializers.get(type);
+            return serializer != null && serializer == builtins.get(type);
+        }
+
+        /**
+         * @return 通过add注册的、不是内置的实现，没有时返回null
+         */
+        static Serializer getCustom(Type type) {
+            Serializer serializer = added.get(type);
+            return serializer == builtins.get(type) ? null : serializer;
         }
 
         public static <T, R> Serializer forMapperObject(Function<T, R> mapper) {
@@ -174,9 +599,16 @@ public class JSON {
         }
 
         public static <T> Serializer forDate(Function<T, Date> mapper) {
+            return forDate(mapper, () -> Configure.get().dateFormat);
+        }
+
+        /**
+         * format返回null时写毫秒数
+         */
+        static <T> Serializer forDate(Function<T, Date> mapper, Supplier<SimpleDateFormat> format) {
             return (value, sb) -> {
                 Date date = mapper.apply((T) value);
-                SimpleDateFormat fmt = Configure.get().dateFormat;
+                SimpleDateFormat fmt = format.get();
                 if (fmt == null)
                     sb.append(date.getTime());
                 else
@@ -258,7 +690,32 @@ public class JSON {
             };
         }
 
+        /**
+         * 日期类型的实现，日期格式取自format
+         */
+        static Map<Type, Serializer> forDates(Supplier<SimpleDateFormat> format) {
+            Map<Type, Serializer> map = new HashMap<>();
+            Serializer date = forDate(v -> (Date) v, format);
+            map.put(Date.class, date);
+            map.put(java.sql.Date.class, date);
+            map.put(Timestamp.class, date);
+            map.put(Calendar.class, forDate(v -> ((Calendar) v).getTime(), format));
+            return map;
+        }
+
         public static Serializer forBean(Type type) {
+            return forBean(type, Serializers::forType);
+        }
+
+        /**
+         * @param forType 解析字段的Serializer
+         */
+        static Serializer forBean(Type type, Function<Type, Serializer> forType) {
+            if (JSONCodegen.enabled) {
+                Serializer serializer = JSONCodegen.newSerializer(type, forType);
+                if (serializer != null)
+                    return serializer;
+            }
             Class<?> clazz = ReflectionSupport.getRawType(type);
             Map<String, Reflection.GetterInfo> getterMap = ReflectionSupport.getGettersMap(clazz);
             List<JSONGetterInfo> getters = new ArrayList<>();
@@ -267,7 +724,7 @@ public class JSON {
                 JSONGetterInfo gi = new JSONGetterInfo();
                 gi.name = e.getKey();
                 gi.getter = ogi.getter;
-                gi.serializer = Serializers.forType(ReflectionSupport.calculateGenericType(type,
+                gi.serializer = forType.apply(ReflectionSupport.calculateGenericType(type,
                         ogi.member.getDeclaringClass(), ogi.type));
                 getters.add(gi);
             }
@@ -279,30 +736,35 @@ public class JSON {
             if (serializer == null) {
                 synchronized (Serializers.class) {
                     if ((serializer = serializers.get(type)) == null)
-                        serializers.put(type, serializer = forTypeWithoutCache(type));
+                        serializers.put(type,
+                                serializer = forTypeWithoutCache(type, Serializers::forType));
                 }
             }
             return serializer;
         }
 
-        private static Serializer forTypeWithoutCache(Type type) {
+        /**
+         * @param forType 解析嵌套类型的Serializer
+         */
+        static Serializer forTypeWithoutCache(Type type, Function<Type, Serializer> forType) {
             if (type instanceof Class) {
                 Class<?> clazz = (Class<?>) type;
                 if (clazz.isArray())
-                    return forArray(forType(clazz.getComponentType()));
-                return forGenericType(clazz, clazz);
+                    return forArray(forType.apply(clazz.getComponentType()));
+                return forGenericType(clazz, clazz, forType);
             } else if (type instanceof GenericArrayType) {
-                return forArray(forType(((GenericArrayType) type).getGenericComponentType()));
+                return forArray(
+                        forType.apply(((GenericArrayType) type).getGenericComponentType()));
             } else if (type instanceof ParameterizedType) {
                 ParameterizedType pt = (ParameterizedType) type;
                 Class<?> clazz = (Class<?>) pt.getRawType();
-                return forGenericType(clazz, type);
+                return forGenericType(clazz, type, forType);
             } else if (type instanceof TypeVariable) {
                 TypeVariable<?> tv = (TypeVariable<?>) type;
-                return forType(tv.getBounds()[0]);
+                return forType.apply(tv.getBounds()[0]);
             } else if (type instanceof WildcardType) {
                 WildcardType wt = (WildcardType) type;
-                return forType(wt.getUpperBounds()[0]);
+                return forType.apply(wt.getUpperBounds()[0]);
             }
             throw new UnsupportedOperationException();
         }
@@ -310,7 +772,8 @@ public class JSON {
         private static final Class<?>[] specialSuperClasses =
                 new Class<?>[] {List.class, Iterable.class, Map.class};
 
-        private static Serializer forGenericType(Class<?> rawType, Type type) {
+        private static Serializer forGenericType(Class<?> rawType, Type type,
+                Function<Type, Serializer> forType) {
             Type[] types = null;
             int index = -1;
             for (int i = 0; i < specialSuperClasses.length; i++) {
@@ -323,13 +786,13 @@ public class JSON {
             }
             if (index != -1) {
                 if (index == 0)
-                    return forArray(forType(types[0]));
+                    return forArray(forType.apply(types[0]));
                 else if (index == 1)
-                    return forIterable(forType(types[0]));
+                    return forIterable(forType.apply(types[0]));
                 else
-                    return forMap(forType(types[0]), forType(types[1]));
+                    return forMap(forType.apply(types[0]), forType.apply(types[1]));
             } else
-                return forBean(type);
+                return forBean(type, forType);
         }
 
         public static final Serializer forObject = (value, sb) -> sb.append(value);
@@ -350,23 +813,44 @@ public class JSON {
             add(forEscapeString(v -> ((Class<?>) v).getName()), Class.class);
             add(forBase64(v -> (byte[]) v), byte[].class);
             add(forEscapeChars(v -> (char[]) v), char[].class);
-            add(forDate(v -> (Date) v), Date.class, java.sql.Date.class, Timestamp.class);
-            add(forDate(v -> ((Calendar) v).getTime()), Calendar.class);
+            forDates(() -> Configure.get().dateFormat)
+                    .forEach((type, serializer) -> add(serializer, type));
             add(forToString, BigDecimal.class, BigInteger.class, AtomicBoolean.class,
                     AtomicInteger.class, AtomicLong.class, Number.class, CharSequence.class);
             add(forEscapeToString, String.class, File.class, StringBuffer.class,
                     StringBuilder.class, MyStringBuilder.class, URI.class, URL.class, Pattern.class,
                     Charset.class);
             add(forAny, Object.class);
+            builtins = new HashMap<>(serializers);
         }
     }
 
     public static class Deserializers {
-        private static final Map<Type, Deserializer> deserializers = new HashMap<>();
+        private static final Map<Type, Deserializer> deserializers = new ConcurrentHashMap<>();
+        private static final Map<Type, Deserializer> added = new ConcurrentHashMap<>();// 通过add注册的实现
+        private static final Map<Type, Deserializer> builtins;
 
         public static void add(Deserializer deserializer, Type... types) {
-            for (Type type : types)
+            for (Type type : types) {
                 deserializers.put(type, deserializer);
+                added.put(type, deserializer);
+            }
+        }
+
+        /**
+         * type当前的实现是否仍是内置的，没有被add替换
+         */
+        static boolean isBuiltin(Type type) {
+            Deserializer deserializer = deserializers.get(type);
+            return deserializer != null && deserializer == builtins.get(type);
+        }
+
+        /**
+         * @return 通过add注册的、不是内置的实现，没有时返回null
+         */
+        static Deserializer getCustom(Type type) {
+            Deserializer deserializer = added.get(type);
+            return deserializer == builtins.get(type) ? null : deserializer;
         }
 
         public static <T, R> Deserializer convert(Deserializer deserializer,
@@ -415,7 +899,7 @@ public class JSON {
         public static final Deserializer forFloat = lex -> {
             switch (lex.getKey()) {
                 case NUM:
-                    return Float.parseFloat(lex.getString());
+                    return lex.getFloat();
                 case LITERAL:
                     return Float.parseFloat(lex.getLiteralString());
                 default:
@@ -425,7 +909,7 @@ public class JSON {
         public static final Deserializer forDouble = lex -> {
             switch (lex.getKey()) {
                 case NUM:
-                    return Double.parseDouble(lex.getString());
+                    return lex.getDouble();
                 case LITERAL:
                     return Double.parseDouble(lex.getLiteralString());
                 default:
@@ -470,22 +954,55 @@ public class JSON {
                     throw lex.newError();
             }
         };
-        public static final Deserializer forDate = lex -> {
-            switch (lex.getKey()) {
-                case LITERAL:
-                    return parseDate(lex.getUnescapeString());
-                default:
-                    throw lex.newError();
-            }
-        };
-        public static final Deserializer forDateMillis = lex -> {
-            switch (lex.getKey()) {
-                case LITERAL:
-                    return parseDate(lex.getUnescapeString()).getTime();
-                default:
-                    throw lex.newError();
-            }
-        };
+        public static final Deserializer forDate = forDate(() -> Configure.get().dateFormat);
+        public static final Deserializer forDateMillis =
+                forDateMillis(() -> Configure.get().dateFormat);
+
+        /**
+         * 字符串按format解析，format返回null时只接受毫秒数
+         */
+        static Deserializer forDate(Supplier<SimpleDateFormat> format) {
+            return lex -> {
+                switch (lex.getKey()) {
+                    case NUM:
+                        return new Date(lex.getLong());
+                    case LITERAL:
+                        return parseDate(lex.getUnescapeString(), format.get());
+                    default:
+                        throw lex.newError();
+                }
+            };
+        }
+
+        static Deserializer forDateMillis(Supplier<SimpleDateFormat> format) {
+            return lex -> {
+                switch (lex.getKey()) {
+                    case NUM:
+                        return lex.getLong();
+                    case LITERAL:
+                        return parseDate(lex.getUnescapeString(), format.get()).getTime();
+                    default:
+                        throw lex.newError();
+                }
+            };
+        }
+
+        /**
+         * 日期类型的实现，日期格式取自format
+         */
+        static Map<Type, Deserializer> forDates(Supplier<SimpleDateFormat> format) {
+            Map<Type, Deserializer> map = new HashMap<>();
+            Deserializer millis = forDateMillis(format);
+            map.put(Date.class, forDate(format));
+            map.put(java.sql.Date.class, convert(millis, v -> new java.sql.Date((long) v)));
+            map.put(Timestamp.class, convert(millis, v -> new Timestamp((long) v)));
+            map.put(Calendar.class, convert(millis, v -> {
+                Calendar cal = Calendar.getInstance();
+                cal.setTimeInMillis((long) v);
+                return cal;
+            }));
+            return map;
+        }
         public static final Deserializer forNumber = lex -> {
             switch (lex.getKey()) {
                 case NUM:
@@ -579,7 +1096,7 @@ public class JSON {
                 if (lex.getKey() != Key.COLON)
                     throw lex.newError();
                 lex.next();
-                V v = (V) keyDeserializer.deserialize(lex);
+                V v = (V) valueDeserializer.deserialize(lex);
                 map.put(k, v);
             }
         }
@@ -596,8 +1113,13 @@ public class JSON {
         public static final Deserializer forDefaultMap =
                 forMap(HashMap::new, forString, forDefault);
 
+        /**
+         * 没有对应setter的字段跳过
+         */
         public static Deserializer forBean(Supplier<?> allocator,
                 Map<String, JSONSetterInfo> setters) {
+            FieldMatcher matcher = new FieldMatcher(new ArrayList<>(setters.keySet()));
+            JSONSetterInfo[] setterArray = setters.values().toArray(new JSONSetterInfo[0]);
             return lex -> {
                 if (lex.getKey() != Key.LBB)
                     throw lex.newError();
@@ -608,14 +1130,16 @@ public class JSON {
                         break;
                     if (lex.getKey() == Key.COMMA)
                         lex.next();
-                    String name = (String) forString.deserialize(lex);
-                    JSONSetterInfo setter = setters.get(name);
-                    if (setter == null)
-                        throw new JSONException("Setter [" + name + "] not found");
+                    int index = lex.matchField(matcher);
                     lex.next();
                     if (lex.getKey() != Key.COLON)
                         throw lex.newError();
                     lex.next();
+                    if (index == -1) {
+                        skipValue(lex);
+                        continue;
+                    }
+                    JSONSetterInfo setter = setterArray[index];
                     Object value = setter.deserializer.deserialize(lex);
                     try {
                         setter.setter.set(target, value);
@@ -628,6 +1152,18 @@ public class JSON {
         }
 
         public static Deserializer forBean(Type type) {
+            return forBean(type, Deserializers::forType);
+        }
+
+        /**
+         * @param forType 解析字段的Deserializer
+         */
+        static Deserializer forBean(Type type, Function<Type, Deserializer> forType) {
+            if (JSONCodegen.enabled) {
+                Deserializer deserializer = JSONCodegen.newDeserializer(type, forType);
+                if (deserializer != null)
+                    return deserializer;
+            }
             Class<?> clazz = ReflectionSupport.getRawType(type);
             Map<String, Reflection.SetterInfo> setterMap = ReflectionSupport.getSettersMap(clazz);
             Map<String, JSONSetterInfo> setters = new HashMap<>();
@@ -635,7 +1171,7 @@ public class JSON {
                 Reflection.SetterInfo osi = e.getValue();
                 JSONSetterInfo si = new JSONSetterInfo();
                 si.setter = osi.setter;
-                si.deserializer = forType(ReflectionSupport.calculateGenericType(type,
+                si.deserializer = forType.apply(ReflectionSupport.calculateGenericType(type,
                         osi.member.getDeclaringClass(), osi.type));
                 setters.put(e.getKey(), si);
             }
@@ -647,32 +1183,36 @@ public class JSON {
             if (deserializer == null) {
                 synchronized (Deserializers.class) {
                     if ((deserializer = deserializers.get(type)) == null)
-                        deserializers.put(type, deserializer = forTypeWithoutCache(type));
+                        deserializers.put(type,
+                                deserializer = forTypeWithoutCache(type, Deserializers::forType));
                 }
             }
             return deserializer;
         }
 
-        private static Deserializer forTypeWithoutCache(Type type) {
+        /**
+         * @param forType 解析嵌套类型的Deserializer
+         */
+        static Deserializer forTypeWithoutCache(Type type, Function<Type, Deserializer> forType) {
             if (type instanceof Class) {
                 Class<?> clazz = (Class<?>) type;
                 if (clazz.isArray())
-                    return forArray(clazz, forType(clazz.getComponentType()));
-                return forGenericType(clazz, clazz);
+                    return forArray(clazz, forType.apply(clazz.getComponentType()));
+                return forGenericType(clazz, clazz, forType);
             } else if (type instanceof GenericArrayType) {
                 GenericArrayType gat = (GenericArrayType) type;
                 return forArray(ReflectionSupport.getRawType(gat),
-                        forType(gat.getGenericComponentType()));
+                        forType.apply(gat.getGenericComponentType()));
             } else if (type instanceof ParameterizedType) {
                 ParameterizedType pt = (ParameterizedType) type;
                 Class<?> clazz = (Class<?>) pt.getRawType();
-                return forGenericType(clazz, type);
+                return forGenericType(clazz, type, forType);
             } else if (type instanceof TypeVariable) {
                 TypeVariable<?> tv = (TypeVariable<?>) type;
-                return forType(tv.getBounds()[0]);
+                return forType.apply(tv.getBounds()[0]);
             } else if (type instanceof WildcardType) {
                 WildcardType wt = (WildcardType) type;
-                return forType(wt.getUpperBounds()[0]);
+                return forType.apply(wt.getUpperBounds()[0]);
             } else
                 throw new UnsupportedOperationException();
         }
@@ -680,7 +1220,8 @@ public class JSON {
         private static final Class<?>[] specialSuperClasses =
                 new Class<?>[] {Set.class, Iterable.class, Map.class};
 
-        private static Deserializer forGenericType(Class<?> rawType, Type type) {
+        private static Deserializer forGenericType(Class<?> rawType, Type type,
+                Function<Type, Deserializer> forType) {
             Type[] types = null;
             int index = -1;
             for (int i = 0; i < specialSuperClasses.length; i++) {
@@ -695,16 +1236,16 @@ public class JSON {
                 if (index == 0)
                     return forCollection(
                             rawType.isInterface() ? HashSet::new : getAllocator(rawType),
-                            forType(types[0]));
+                            forType.apply(types[0]));
                 else if (index == 1)
                     return forCollection(
                             rawType.isInterface() ? ArrayList::new : getAllocator(rawType),
-                            forType(types[0]));
+                            forType.apply(types[0]));
                 else
                     return forMap(rawType.isInterface() ? HashMap::new : getAllocator(rawType),
-                            forType(types[0]), forType(types[1]));
+                            forType.apply(types[0]), forType.apply(types[1]));
             } else
-                return forBean(type);
+                return forBean(type, forType);
         }
 
         private static <T> Supplier<T> getAllocator(Class<T> clazz) {
@@ -717,8 +1258,7 @@ public class JSON {
             };
         }
 
-        private static Date parseDate(String value) {
-            SimpleDateFormat fmt = Configure.get().dateFormat;
+        private static Date parseDate(String value, SimpleDateFormat fmt) {
             if (fmt == null)
                 throw new JSONException("You need to set date format to JSON Configure");
             try {
@@ -740,14 +1280,8 @@ public class JSON {
             add(convert(forString, ReflectionSupport::getClassByName), Class.class);
             add(forByterArray, byte[].class);
             add(forCharArray, char[].class);
-            add(forDate, Date.class);
-            add(convert(forDateMillis, v -> new java.sql.Date((long) v)), java.sql.Date.class);
-            add(convert(forDateMillis, v -> new Timestamp((long) v)), Timestamp.class);
-            add(convert(forDateMillis, v -> {
-                Calendar cal = Calendar.getInstance();
-                cal.setTimeInMillis((long) v);
-                return cal;
-            }), Calendar.class);
+            forDates(() -> Configure.get().dateFormat)
+                    .forEach((type, deserializer) -> add(deserializer, type));
             add(convert(forString, v -> new BigDecimal((String) v)), BigDecimal.class);
             add(convert(forString, v -> new BigInteger((String) v)), BigInteger.class);
             add(convert(forBoolean, v -> new AtomicBoolean((boolean) v)), AtomicBoolean.class);
@@ -776,6 +1310,98 @@ public class JSON {
             add(convert(forString, v -> Pattern.compile((String) v)), Pattern.class);
             add(convert(forString, v -> Charset.forName((String) v)), Charset.class);
             add(forDefault, Object.class);
+            builtins = new HashMap<>(deserializers);
+        }
+    }
+
+    /**
+     * 拉取式的数组迭代器，hasNext时读取到下一个元素的开始，next时才解析该元素
+     */
+    public static class ArrayIterator<T> implements Iterator<T> {
+        private JSONLex lex;
+        private Deserializer itemDeserializer;
+        private boolean advanced;
+        private boolean finished;
+
+        public ArrayIterator(JSONLex lex, String path, Deserializer itemDeserializer) {
+            this.lex = lex;
+            this.itemDeserializer = itemDeserializer;
+            lex.next();
+            if (path != null && !path.isEmpty())
+                for (String name : path.split("\\."))
+                    seek(name);
+            if (lex.getKey() != Key.LMB)
+                throw lex.newError();
+        }
+
+        /**
+         * 在当前对象中查找字段，跳过其他字段的值，找到后停在字段值的开始
+         */
+        private void seek(String name) {
+            if (lex.getKey() != Key.LBB)
+                throw lex.newError();
+            while (true) {
+                lex.next();
+                if (lex.getKey() == Key.RBB)
+                    throw new JSONException("Field [" + name + "] not found");
+                if (lex.getKey() == Key.COMMA)
+                    lex.next();
+                String key = (String) Deserializers.forString.deserialize(lex);
+                lex.next();
+                if (lex.getKey() != Key.COLON)
+                    throw lex.newError();
+                lex.next();
+                if (key.equals(name))
+                    return;
+                skipValue(lex);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!advanced && !finished) {
+                lex.next();
+                if (lex.getKey() == Key.RMB)
+                    finished = true;
+                else if (lex.getKey() == Key.COMMA)
+                    lex.next();
+                advanced = true;
+            }
+            return !finished;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            advanced = false;
+            return (T) itemDeserializer.deserialize(lex);
+        }
+    }
+
+    /**
+     * 跳过当前的值，结束时停在值的最后一个token
+     */
+    static void skipValue(JSONLex lex) {
+        Key key = lex.getKey();
+        if (key != Key.LBB && key != Key.LMB)
+            return;
+        int depth = 1;
+        while (depth > 0) {
+            switch (lex.next()) {
+                case LBB:
+                case LMB:
+                    depth++;
+                    break;
+                case RBB:
+                case RMB:
+                    depth--;
+                    break;
+                case EOF:
+                    throw lex.newError();
+                default:
+                    break;
+            }
         }
     }
 
@@ -845,6 +1471,15 @@ public class JSON {
     public interface JSONLex {
         public Key getKey();
 
+        /**
+         * 匹配当前token作为字段名
+         *
+         * @return 字段下标，-1表示没有该字段
+         */
+        public default int matchField(FieldMatcher matcher) {
+            return matcher.match((String) Deserializers.forString.deserialize(this));
+        }
+
         public Key next();
 
         public RuntimeException newError();
@@ -871,6 +1506,17 @@ public class JSON {
 
         public long getLiteralLong();
 
+        /**
+         * 当前NUM token的浮点值，二进制格式可以不经过文本直接返回
+         */
+        public default float getFloat() {
+            return Float.parseFloat(getString());
+        }
+
+        public default double getDouble() {
+            return Double.parseDouble(getString());
+        }
+
         public Number getNumber();
 
         public Number getLiteralNumber();
@@ -888,7 +1534,6 @@ public class JSON {
                 initNFA();
 
                 defineActionTemplate("finish", (lex, a) -> lex.finish((Key) a[0]));
-                defineActionTemplate("rollback", (lex, a) -> lex.rollback());
 
                 Key[] keys = Key.values();
                 for (Key key : keys)
@@ -897,40 +1542,130 @@ public class JSON {
                 definePattern("ESCAPE", "\\\\(u[0-9a-fA-F]{4})|([^u])");
                 definePattern("LITERAL_1", "\'(${ESCAPE}|[^(\\\\\\\')])*\'");
                 definePattern("LITERAL_2", "\"(${ESCAPE}|[^(\\\\\\\")])*\"");
-                definePattern("NOT_NAMED_CHAR", "[^(a-zA-Z0-9_)]");
 
                 addPattern("START", "[\r\n\t\b\f ]+#{finish(null)}");
                 addPattern("START", "[$]#{finish(EOF)}");
                 addPattern("START", "[a-zA-Z_][a-zA-Z0-9_]*#{finish(TEXT)}");
-                addPattern("START", "-?[0-9]+(\\.[0-9]+)?#{finish(NUM)}");
+                addPattern("START", "-?[0-9]+(\\.[0-9]+)?([eE][+\\-]?[0-9]+)?#{finish(NUM)}");
                 addPattern("START", "${LITERAL_1}|${LITERAL_2}#{finish(LITERAL)}");
                 for (Key key : keys) {
                     if (key.ch != 0)
                         addPattern("START", "\\" + key.ch + "#{finish(" + key.name() + ")}");
-                    else if (key.str != null)
-                        addPattern("START", key.str + "${NOT_NAMED_CHAR}#{finish(" + key.name()
-                                + ")}#{rollback()}");
                 }
                 return buildDFA("START");
             }
         }
 
+        private static final Key[] KEYWORDS = {Key.TRUE, Key.FALSE, Key.NULL};
+
+        private int backslash = -1;// 不小于index的第一个'\\'的位置，没有时为str.length()
+        boolean escaped;// 当前LITERAL中含有转义字符
+
+        @Override
+        public void reset(String str) {
+            super.reset(str);
+            backslash = -1;
+        }
+
+        /**
+         * true/false/null与TEXT共用同一规则，在这里区分，避免关键字规则与TEXT规则在DFA中互相覆盖
+         */
+        @Override
+        public Key next() {
+            int i = index, length = str.length();
+            char c;
+            while (i < length && ((c = str.charAt(i)) == ' ' || c == '\n' || c == '\r' || c == '\t'
+                    || c == '\b' || c == '\f'))
+                i++;
+            index = i;
+            if (i < length && ((c = str.charAt(i)) == '\"' || c == '\''))
+                return scanLiteral(i, c);
+            Key key = super.next();
+            if (key == Key.TEXT) {
+                int len = index - begin;
+                for (Key keyword : KEYWORDS) {
+                    if (keyword.str.length() == len && str.startsWith(keyword.str, begin))
+                        return this.key = keyword;
+                }
+            }
+            return key;
+        }
+
         @Override
         public RuntimeException newError(String message) {
             return new JSONException(message);
         }
 
+        /**
+         * 字符串字面量不走DFA，用String.indexOf（JIT会将其向量化）直接找结束引号和转义符，转义规则与DFA相同
+         */
+        private Key scanLiteral(int from, char quote) {
+            int len = str.length();
+            int i = from + 1;
+            escaped = false;
+            while (true) {
+                int q = str.indexOf(quote, i);
+                if (q < 0) {
+                    index = len;
+                    throw newError();
+                }
+                if (backslash < i) {
+                    backslash = str.indexOf('\\', i);
+                    if (backslash < 0)
+                        backslash = len;
+                }
+                if (backslash > q) {
+                    begin = from;
+                    index = end = q + 1;
+                    return key = Key.LITERAL;
+                }
+                i = backslash + 1;
+                escaped = true;
+                if (i < len && str.charAt(i) == 'u') {
+                    for (int j = 1; j <= 4; j++) {
+                        if (i + j >= len || Character.digit(str.charAt(i + j), 16) < 0) {
+                            index = i + j;
+                            throw newError();
+                        }
+                    }
+                    i += 5;
+                } else if (i < len) {
+                    i++;
+                } else {
+                    index = len;
+                    throw newError();
+                }
+            }
+        }
+
         private MyStringBuilder buffer = new MyStringBuilder();
 
         public String getString() {
             return str.substring(begin, index);
         }
 
+        @Override
+        public int matchField(FieldMatcher matcher) {
+            if (key != Key.LITERAL)
+                return JSONLex.super.matchField(matcher);
+            int node = 0;
+            for (int i = begin + 1, end = index - 1; i < end; i++) {
+                char c = str.charAt(i);
+                if (c == '\\' || c >= 0x80)
+                    return matcher.match(getUnescapeString());
+                if ((node = matcher.next(node, c)) == -1)
+                    return -1;
+            }
+            return matcher.getIndex(node);
+        }
+
         public String getLiteralString() {
             return str.substring(begin + 1, index - 1);
         }
 
         public String getUnescapeString() {
+            if (!escaped)
+                return str.substring(begin + 1, index - 1);
             return buffer.clear().appendUnEscape(str, begin + 1, index - 1).toString();
         }
 
@@ -945,7 +1680,7 @@ public class JSON {
         }
 
         public byte[] getBase64() {
-            return Strings.decodeBase64(str, begin + 1, index - 1);
+            return Strings.decodeBase64(str, begin + 1, index - begin - 2);
         }
 
         public char getUnescapeChar() {
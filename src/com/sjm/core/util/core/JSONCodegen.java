@@ -0,0 +1,541 @@
+package com.sjm.core.util.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.sjm.core.asm.ClassWriter;
+import com.sjm.core.asm.Label;
+import com.sjm.core.asm.MethodVisitor;
+import com.sjm.core.asm.Opcodes;
+import com.sjm.core.logger.Logger;
+import com.sjm.core.logger.LoggerFactory;
+import com.sjm.core.util.core.JSON.Deserializer;
+import com.sjm.core.util.core.JSON.Deserializers;
+import com.sjm.core.util.core.JSON.JSONLex;
+import com.sjm.core.util.core.JSON.Key;
+import com.sjm.core.util.core.JSON.Serializer;
+import com.sjm.core.util.core.JSON.Serializers;
+
+/**
+ * 用asm为bean类型生成专用的Serializer/Deserializer，直接读写字段和调用getter/setter，原始类型不装箱，字段名预先转义为char[]
+ *
+ * 默认关闭，enabled需在相应类型第一次序列化之前打开（Serializers/Deserializers按类型缓存）。
+ * 只处理public的具体类；其他类型、类不可访问或没有asm时返回null，由调用方退回反射实现。
+ * 原始类型字段直接读写；生成时若Serializers.add/Deserializers.add为该原始类型注册了其他实现，则装箱后交给该实现。
+ */
+public class JSONCodegen implements Opcodes {
+    static final Logger logger = LoggerFactory.getLogger(JSONCodegen.class);
+
+    public static volatile boolean enabled = false;
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    private static final String SB = "com/sjm/core/util/core/MyStringBuilder";
+    private static final String LEX = "com/sjm/core/util/core/JSON$JSONLex";
+    private static final String SERIALIZER = "com/sjm/core/util/core/JSON$Serializer";
+    private static final String DESERIALIZER = "com/sjm/core/util/core/JSON$Deserializer";
+    private static final String BEAN_SERIALIZER =
+            "com/sjm/core/util/core/JSONCodegen$BeanSerializer";
+    private static final String BEAN_DESERIALIZER =
+            "com/sjm/core/util/core/JSONCodegen$BeanDeserializer";
+    private static final String CODEGEN = "com/sjm/core/util/core/JSONCodegen";
+
+    /**
+     * 生成类的父类，names[i]为 "字段名": 的转义结果
+     */
+    public static abstract class BeanSerializer implements Serializer {
+        protected char[][] names;
+        protected Serializer[] serializers;
+    }
+
+    /**
+     * 生成类的父类，只生成newInstance和按下标赋值的set，解析循环与Deserializers.forBean相同，未知字段跳过
+     */
+    public static abstract class BeanDeserializer implements Deserializer {
+        protected JSON.FieldMatcher matcher;
+        protected Deserializer[] deserializers;
+
+        protected abstract Object newInstance();
+
+        protected abstract void set(Object target, int index, JSONLex lex);
+
+        @Override
+        public Object deserialize(JSONLex lex) {
+            if (lex.getKey() != Key.LBB)
+                throw lex.newError();
+            Object target = newInstance();
+            while (true) {
+                lex.next();
+                if (lex.getKey() == Key.RBB)
+                    break;
+                if (lex.getKey() == Key.COMMA)
+                    lex.next();
+                int index = lex.matchField(matcher);
+                lex.next();
+                if (lex.getKey() != Key.COLON)
+                    throw lex.newError();
+                lex.next();
+                if (index == -1)
+                    JSON.skipValue(lex);
+                else
+                    set(target, index, lex);
+            }
+            return target;
+        }
+    }
+
+    static class GeneratedClassLoader extends ClassLoader {
+        public GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            return JSONCodegen.class.getClassLoader().loadClass(name);
+        }
+
+        public Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    static class Property {
+        public String name;
+        public Member member;
+        public Class<?> rawType;
+        public Type type;
+        public boolean direct;// 原始类型直接读写，不经过Serializer/Deserializer
+    }
+
+    public static Serializer newSerializer(Type type) {
+        return newSerializer(type, Serializers::forType);
+    }
+
+    /**
+     * @param forType 解析字段的Serializer
+     */
+    public static Serializer newSerializer(Type type, Function<Type, Serializer> forType) {
+        Class<?> clazz = JSON.ReflectionSupport.getRawType(type);
+        if (!isSupported(clazz))
+            return null;
+        List<Property> properties = new ArrayList<>();
+        for (Map.Entry<String, Reflection.GetterInfo> e : JSON.ReflectionSupport
+                .getGettersMap(clazz).entrySet()) {
+            Reflection.GetterInfo gi = e.getValue();
+            Property p = new Property();
+            p.name = e.getKey();
+            p.member = gi.member;
+            p.rawType = gi.member instanceof Method ? ((Method) gi.member).getReturnType()
+                    : ((Field) gi.member).getType();
+            p.type = JSON.ReflectionSupport.calculateGenericType(type,
+                    gi.member.getDeclaringClass(), gi.type);
+            p.direct = p.rawType.isPrimitive() && p.rawType != char.class
+                    && Serializers.isBuiltin(p.rawType);
+            properties.add(p);
+        }
+        try {
+            String name = newClassName(clazz, "Serializer");
+            byte[] bytes = generateSerializer(name, clazz, properties);
+            BeanSerializer serializer = (BeanSerializer) define(clazz, name, bytes).newInstance();
+            serializer.names = new char[properties.size()][];
+            serializer.serializers = new Serializer[properties.size()];
+            for (int i = 0; i < properties.size(); i++) {
+                Property p = properties.get(i);
+                serializer.names[i] = new MyStringBuilder().append('\"')
+                        .appendEscape(p.name, -1, -1).append('\"').append(':').toCharArray();
+                if (!p.direct)
+                    serializer.serializers[i] = forType.apply(p.type);
+            }
+            return serializer;
+        } catch (ReflectiveOperationException | SecurityException | IllegalAccessError
+                | NoClassDefFoundError e) {
+            logger.debug("Generate serializer for " + type + " failed, use reflection", e);
+            return null;
+        }
+    }
+
+    public static Deserializer newDeserializer(Type type) {
+        return newDeserializer(type, Deserializers::forType);
+    }
+
+    /**
+     * @param forType 解析字段的Deserializer
+     */
+    public static Deserializer newDeserializer(Type type, Function<Type, Deserializer> forType) {
+        Class<?> clazz = JSON.ReflectionSupport.getRawType(type);
+        if (!isSupported(clazz) || Modifier.isAbstract(clazz.getModifiers()))
+            return null;
+        try {
+            if (!Modifier.isPublic(clazz.getConstructor().getModifiers()))
+                return null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        List<Property> properties = new ArrayList<>();
+        for (Map.Entry<String, Reflection.SetterInfo> e : JSON.ReflectionSupport
+                .getSettersMap(clazz).entrySet()) {
+            Reflection.SetterInfo si = e.getValue();
+            Property p = new Property();
+            p.name = e.getKey();
+            p.member = si.member;
+            p.rawType = si.member instanceof Method ? ((Method) si.member).getParameterTypes()[0]
+                    : ((Field) si.member).getType();
+            p.type = JSON.ReflectionSupport.calculateGenericType(type,
+                    si.member.getDeclaringClass(), si.type);
+            p.direct = p.rawType.isPrimitive() && Deserializers.isBuiltin(p.rawType);
+            properties.add(p);
+        }
+        try {
+            String name = newClassName(clazz, "Deserializer");
+            byte[] bytes = generateDeserializer(name, clazz, properties);
+            BeanDeserializer deserializer =
+                    (BeanDeserializer) define(clazz, name, bytes).newInstance();
+            List<String> names = new ArrayList<>();
+            deserializer.deserializers = new Deserializer[properties.size()];
+            for (int i = 0; i < properties.size(); i++) {
+                Property p = properties.get(i);
+                names.add(p.name);
+                if (!p.direct)
+                    deserializer.deserializers[i] = forType.apply(p.type);
+            }
+            deserializer.matcher = new JSON.FieldMatcher(names);
+            return deserializer;
+        } catch (ReflectiveOperationException | SecurityException | IllegalAccessError
+                | NoClassDefFoundError e) {
+            logger.debug("Generate deserializer for " + type + " failed, use reflection", e);
+            return null;
+        }
+    }
+
+    /**
+     * 启动类加载器加载的类（JDK内部类型）不生成，避免模块访问限制
+     */
+    private static boolean isSupported(Class<?> clazz) {
+        return Modifier.isPublic(clazz.getModifiers()) && !clazz.isArray()
+                && !clazz.isPrimitive() && clazz.getClassLoader() != null;
+    }
+
+    private static String newClassName(Class<?> clazz, String suffix) {
+        return "com/sjm/core/util/core/generated/" + clazz.getName().replace('.', '_') + "$"
+                + suffix + counter.incrementAndGet();
+    }
+
+    private static Class<?> define(Class<?> clazz, String name, byte[] bytes) {
+        return new GeneratedClassLoader(clazz.getClassLoader()).define(name.replace('/', '.'),
+                bytes);
+    }
+
+    private static ClassWriter newClassWriter(String name, String superName) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // 生成的代码在分支合并处没有类型不同的引用，不需要加载类
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER | ACC_FINAL, name, null, superName, null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        return cw;
+    }
+
+    private static byte[] generateSerializer(String name, Class<?> clazz,
+            List<Property> properties) {
+        String owner = com.sjm.core.asm.Type.getInternalName(clazz);
+        ClassWriter cw = newClassWriter(name, BEAN_SERIALIZER);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "serialize",
+                "(Ljava/lang/Object;L" + SB + ";)V", null, null);
+        // 0:this 1:value 2:sb 3:bean 4:beforeLen 5:names 6:serializers 7:v
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, owner);
+        mv.visitVarInsn(ASTORE, 3);
+        appendChar(mv, '{');
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, SB, "length", "()I", false);
+        mv.visitVarInsn(ISTORE, 4);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, BEAN_SERIALIZER, "names", "[[C");
+        mv.visitVarInsn(ASTORE, 5);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, BEAN_SERIALIZER, "serializers", "[L" + SERIALIZER + ";");
+        mv.visitVarInsn(ASTORE, 6);
+        for (int i = 0; i < properties.size(); i++) {
+            Property p = properties.get(i);
+            if (p.direct) {
+                appendName(mv, i);
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitVarInsn(ALOAD, 3);
+                get(mv, clazz, owner, p);
+                String desc = p.rawType == byte.class || p.rawType == short.class ? "I"
+                        : com.sjm.core.asm.Type.getDescriptor(p.rawType);
+                mv.visitMethodInsn(INVOKEVIRTUAL, SB, "append", "(" + desc + ")L" + SB + ";",
+                        false);
+                mv.visitInsn(POP);
+                appendChar(mv, ',');
+            } else {
+                mv.visitVarInsn(ALOAD, 3);
+                get(mv, clazz, owner, p);
+                if (p.rawType.isPrimitive())
+                    box(mv, p.rawType);
+                mv.visitVarInsn(ASTORE, 7);
+                Label skip = new Label();
+                mv.visitVarInsn(ALOAD, 7);
+                mv.visitJumpInsn(IFNULL, skip);
+                appendName(mv, i);
+                mv.visitVarInsn(ALOAD, 6);
+                pushInt(mv, i);
+                mv.visitInsn(AALOAD);
+                mv.visitVarInsn(ALOAD, 7);
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitMethodInsn(INVOKEINTERFACE, SERIALIZER, "serialize",
+                        "(Ljava/lang/Object;L" + SB + ";)V", true);
+                appendChar(mv, ',');
+                mv.visitLabel(skip);
+            }
+        }
+        Label empty = new Label();
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, SB, "length", "()I", false);
+        mv.visitVarInsn(ILOAD, 4);
+        mv.visitJumpInsn(IF_ICMPEQ, empty);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, SB, "deleteEnd", "()L" + SB + ";", false);
+        mv.visitInsn(POP);
+        mv.visitLabel(empty);
+        appendChar(mv, '}');
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void appendChar(MethodVisitor mv, char c) {
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitIntInsn(BIPUSH, c);
+        mv.visitMethodInsn(INVOKEVIRTUAL, SB, "append", "(C)L" + SB + ";", false);
+        mv.visitInsn(POP);
+    }
+
+    private static void appendName(MethodVisitor mv, int i) {
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitVarInsn(ALOAD, 5);
+        pushInt(mv, i);
+        mv.visitInsn(AALOAD);
+        mv.visitMethodInsn(INVOKEVIRTUAL, SB, "append", "([C)L" + SB + ";", false);
+        mv.visitInsn(POP);
+    }
+
+    /**
+     * 栈顶为bean，替换为属性值
+     */
+    private static void get(MethodVisitor mv, Class<?> clazz, String owner, Property p) {
+        String desc = com.sjm.core.asm.Type.getDescriptor(p.rawType);
+        if (p.member instanceof Field)
+            mv.visitFieldInsn(GETFIELD, owner, p.member.getName(), desc);
+        else
+            mv.visitMethodInsn(clazz.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL, owner,
+                    p.member.getName(), "()" + desc, clazz.isInterface());
+    }
+
+    private static byte[] generateDeserializer(String name, Class<?> clazz,
+            List<Property> properties) {
+        String owner = com.sjm.core.asm.Type.getInternalName(clazz);
+        ClassWriter cw = newClassWriter(name, BEAN_DESERIALIZER);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "newInstance", "()Ljava/lang/Object;",
+                null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, owner);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", "()V", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // 0:this 1:target 2:index 3:lex
+        mv = cw.visitMethod(ACC_PROTECTED, "set", "(Ljava/lang/Object;IL" + LEX + ";)V", null,
+                null);
+        mv.visitCode();
+        Label end = new Label();
+        if (!properties.isEmpty()) {
+            Label[] labels = new Label[properties.size()];
+            for (int i = 0; i < labels.length; i++)
+                labels[i] = new Label();
+            mv.visitVarInsn(ILOAD, 2);
+            mv.visitTableSwitchInsn(0, labels.length - 1, end, labels);
+            for (int i = 0; i < labels.length; i++) {
+                Property p = properties.get(i);
+                mv.visitLabel(labels[i]);
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitTypeInsn(CHECKCAST, owner);
+                String desc = com.sjm.core.asm.Type.getDescriptor(p.rawType);
+                if (p.direct) {
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitMethodInsn(INVOKESTATIC, CODEGEN, "read" + capitalize(p.rawType),
+                            "(L" + LEX + ";)" + desc, false);
+                } else {
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitFieldInsn(GETFIELD, BEAN_DESERIALIZER, "deserializers",
+                            "[L" + DESERIALIZER + ";");
+                    pushInt(mv, i);
+                    mv.visitInsn(AALOAD);
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitMethodInsn(INVOKEINTERFACE, DESERIALIZER, "deserialize",
+                            "(L" + LEX + ";)Ljava/lang/Object;", true);
+                    if (p.rawType.isPrimitive())
+                        unbox(mv, p.rawType);
+                    else if (p.rawType != Object.class)
+                        mv.visitTypeInsn(CHECKCAST,
+                                com.sjm.core.asm.Type.getInternalName(p.rawType));
+                }
+                if (p.member instanceof Field) {
+                    mv.visitFieldInsn(PUTFIELD, owner, p.member.getName(), desc);
+                } else {
+                    Method method = (Method) p.member;
+                    mv.visitMethodInsn(INVOKEVIRTUAL, owner, method.getName(),
+                            "(" + desc + ")" + com.sjm.core.asm.Type
+                                    .getDescriptor(method.getReturnType()),
+                            false);
+                    Class<?> returnType = method.getReturnType();
+                    if (returnType == long.class || returnType == double.class)
+                        mv.visitInsn(POP2);
+                    else if (returnType != void.class)
+                        mv.visitInsn(POP);
+                }
+                mv.visitJumpInsn(GOTO, end);
+            }
+        }
+        mv.visitLabel(end);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static String boxedName(Class<?> primitive) {
+        if (primitive == int.class)
+            return "java/lang/Integer";
+        if (primitive == char.class)
+            return "java/lang/Character";
+        return "java/lang/" + capitalize(primitive);
+    }
+
+    private static void box(MethodVisitor mv, Class<?> primitive) {
+        String boxed = boxedName(primitive);
+        mv.visitMethodInsn(INVOKESTATIC, boxed, "valueOf",
+                "(" + com.sjm.core.asm.Type.getDescriptor(primitive) + ")L" + boxed + ";", false);
+    }
+
+    private static void unbox(MethodVisitor mv, Class<?> primitive) {
+        String boxed = boxedName(primitive);
+        mv.visitTypeInsn(CHECKCAST, boxed);
+        mv.visitMethodInsn(INVOKEVIRTUAL, boxed, primitive.getName() + "Value",
+                "()" + com.sjm.core.asm.Type.getDescriptor(primitive), false);
+    }
+
+    private static String capitalize(Class<?> primitive) {
+        String name = primitive.getName();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5)
+            mv.visitInsn(ICONST_0 + value);
+        else if (value <= Byte.MAX_VALUE)
+            mv.visitIntInsn(BIPUSH, value);
+        else if (value <= Short.MAX_VALUE)
+            mv.visitIntInsn(SIPUSH, value);
+        else
+            mv.visitLdcInsn(value);
+    }
+
+    // 以下方法供生成的代码调用，与Deserializers中对应的实现相同，但不装箱
+
+    public static int readInt(JSONLex lex) {
+        switch (lex.getKey()) {
+            case NUM:
+                return lex.getInt();
+            case LITERAL:
+                return lex.getLiteralInt();
+            default:
+                throw lex.newError();
+        }
+    }
+
+    public static short readShort(JSONLex lex) {
+        return (short) readInt(lex);
+    }
+
+    public static byte readByte(JSONLex lex) {
+        return (byte) readInt(lex);
+    }
+
+    public static long readLong(JSONLex lex) {
+        switch (lex.getKey()) {
+            case NUM:
+                return lex.getLong();
+            case LITERAL:
+                return lex.getLiteralLong();
+            default:
+                throw lex.newError();
+        }
+    }
+
+    public static boolean readBoolean(JSONLex lex) {
+        switch (lex.getKey()) {
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                throw lex.newError();
+        }
+    }
+
+    public static char readChar(JSONLex lex) {
+        switch (lex.getKey()) {
+            case LITERAL:
+                return lex.getUnescapeChar();
+            default:
+                throw lex.newError();
+        }
+    }
+
+    public static float readFloat(JSONLex lex) {
+        switch (lex.getKey()) {
+            case NUM:
+                return lex.getFloat();
+            case LITERAL:
+                return Float.parseFloat(lex.getLiteralString());
+            default:
+                throw lex.newError();
+        }
+    }
+
+    public static double readDouble(JSONLex lex) {
+        switch (lex.getKey()) {
+            case NUM:
+                return lex.getDouble();
+            case LITERAL:
+                return Double.parseDouble(lex.getLiteralString());
+            default:
+                throw lex.newError();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.sjm.core.util.core;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sjm.core.util.core.JSON.Deserializers;
+import com.sjm.core.util.core.JSON.FieldMatcher;
+import com.sjm.core.util.core.JSON.JSONLex;
+import com.sjm.core.util.core.JSON.Key;
+import com.sjm.core.util.core.JSON.StringJSONLex;
+
+/**
+ * 预编译的一组JSON路径，按token流抽取匹配的值，不匹配的子树直接跳过，不构造对象
+ *
+ * 路径语法： $ 之后跟若干 .name、['name']、[n]、.* 或 [*]，例如 $.header.type、$.items[*].id，
+ * 其中.*匹配对象的所有字段，[*]匹配数组的所有元素
+ *
+ * 多个路径合并为一棵树一起匹配；所有路径都不含通配符时，每个路径取第一个匹配，全部找到后不再读取后面的内容。
+ * 编译后线程安全，可以保存复用。
+ */
+public class JSONPath {
+    static class Node {
+        public Map<String, Node> fields = new LinkedHashMap<>();
+        public Node anyField;
+        public Map<Integer, Node> indexes = new HashMap<>();
+        public Node anyIndex;
+        public List<Integer> targets = new ArrayList<>();// 在此结束的路径下标
+        public FieldMatcher matcher;
+        public Node[] fieldNodes;// 与matcher的字段下标对应
+
+        void merge(Node other) {
+            targets.addAll(other.targets);
+            for (Map.Entry<String, Node> e : other.fields.entrySet())
+                fields.computeIfAbsent(e.getKey(), k -> new Node()).merge(e.getValue());
+            for (Map.Entry<Integer, Node> e : other.indexes.entrySet())
+                indexes.computeIfAbsent(e.getKey(), k -> new Node()).merge(e.getValue());
+            if (other.anyField != null)
+                (anyField == null ? anyField = new Node() : anyField).merge(other.anyField);
+            if (other.anyIndex != null)
+                (anyIndex == null ? anyIndex = new Node() : anyIndex).merge(other.anyIndex);
+        }
+
+        /**
+         * 把通配符的子树并入每个具体的字段和下标，匹配时每个位置只需要走一个节点。
+         * 先合并再build，每个节点只build一次，否则并入的通配符会在子节点中再展开一次，路径重复出现在targets中
+         */
+        void build() {
+            if (anyField != null) {
+                for (Node node : fields.values())
+                    node.merge(anyField);
+                anyField.build();
+            }
+            if (anyIndex != null) {
+                for (Node node : indexes.values())
+                    node.merge(anyIndex);
+                anyIndex.build();
+            }
+            for (Node node : fields.values())
+                node.build();
+            for (Node node : indexes.values())
+                node.build();
+            if (!fields.isEmpty()) {
+                matcher = new FieldMatcher(new ArrayList<>(fields.keySet()));
+                fieldNodes = fields.values().toArray(new Node[0]);
+            }
+        }
+
+        Node field(Object key) {
+            Node node = fields.get(String.valueOf(key));
+            return node != null ? node : anyField;
+        }
+
+        Node index(int index) {
+            Node node = indexes.get(index);
+            return node != null ? node : anyIndex;
+        }
+
+        boolean isLeaf() {
+            return fields.isEmpty() && indexes.isEmpty() && anyField == null && anyIndex == null;
+        }
+    }
+
+    /**
+     * 一次抽取的结果
+     */
+    class Matches {
+        public List<List<Object>> values = new ArrayList<>(paths.length);
+        public int remaining = paths.length;// 还没有匹配的路径数，含通配符时不使用
+
+        Matches() {
+            for (int i = 0; i < paths.length; i++)
+                values.add(new ArrayList<>());
+        }
+
+        /**
+         * @return true表示所有路径都已找到
+         */
+        boolean add(int path, Object value) {
+            List<Object> list = values.get(path);
+            if (wildcard) {
+                list.add(value);
+                return false;
+            }
+            if (list.isEmpty()) {
+                list.add(value);
+                remaining--;
+            }
+            return remaining == 0;
+        }
+    }
+
+    private final String[] paths;
+    private final Node root = new Node();
+    private boolean wildcard;
+
+    private JSONPath(String[] paths) {
+        this.paths = paths.clone();
+        for (int i = 0; i < paths.length; i++)
+            parse(paths[i]).targets.add(i);
+        root.build();
+    }
+
+    public static JSONPath compile(String... paths) {
+        return new JSONPath(paths);
+    }
+
+    public String[] getPaths() {
+        return paths.clone();
+    }
+
+    private Node parse(String path) {
+        if (!path.startsWith("$"))
+            throw newPathError(path);
+        Node node = root;
+        int i = 1, len = path.length();
+        while (i < len) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < len && path.charAt(end) != '.' && path.charAt(end) != '[')
+                    end++;
+                String name = path.substring(i + 1, end);
+                if (name.isEmpty())
+                    throw newPathError(path);
+                node = name.equals("*") ? anyField(node) : field(node, name);
+                i = end;
+            } else if (c == '[') {
+                int end = path.indexOf(']', i);
+                if (end < 0)
+                    throw newPathError(path);
+                String s = path.substring(i + 1, end).trim();
+                if (s.equals("*")) {
+                    node = anyIndex(node);
+                } else if (s.length() >= 2 && (s.charAt(0) == '\'' || s.charAt(0) == '\"')
+                        && s.charAt(s.length() - 1) == s.charAt(0)) {
+                    node = field(node, s.substring(1, s.length() - 1));
+                } else {
+                    try {
+                        node = node.indexes.computeIfAbsent(Integer.parseInt(s), k -> new Node());
+                    } catch (NumberFormatException e) {
+                        throw newPathError(path);
+                    }
+                }
+                i = end + 1;
+            } else {
+                throw newPathError(path);
+            }
+        }
+        return node;
+    }
+
+    private static Node field(Node node, String name) {
+        return node.fields.computeIfAbsent(name, k -> new Node());
+    }
+
+    private Node anyField(Node node) {
+        wildcard = true;
+        return node.anyField == null ? node.anyField = new Node() : node.anyField;
+    }
+
+    private Node anyIndex(Node node) {
+        wildcard = true;
+        return node.anyIndex == null ? node.anyIndex = new Node() : node.anyIndex;
+    }
+
+    private static IllegalArgumentException newPathError(String path) {
+        return new IllegalArgumentException("Invalid JSON path: " + path);
+    }
+
+    /**
+     * @return 按路径顺序的结果，每个路径对应匹配到的值的列表（文档顺序），没有匹配时为空列表
+     */
+    public Map<String, List<Object>> extract(String json) {
+        StringJSONLex lex = new StringJSONLex();
+        lex.resetAndNext(json);
+        return extract(lex);
+    }
+
+    /**
+     * 不关闭in，所有路径都找到后不再读取
+     */
+    public Map<String, List<Object>> extract(InputStream in) {
+        ByteJSONLex lex = new ByteJSONLex(in);
+        lex.next();
+        return extract(lex);
+    }
+
+    public Map<String, List<Object>> extract(ByteBuffer buffer) {
+        ByteJSONLex lex = new ByteJSONLex(buffer);
+        lex.next();
+        return extract(lex);
+    }
+
+    private Map<String, List<Object>> extract(JSONLex lex) {
+        Matches matches = new Matches();
+        walk(lex, root, matches);
+        Map<String, List<Object>> result = new LinkedHashMap<>();
+        for (int i = 0; i < paths.length; i++)
+            result.put(paths[i], matches.values.get(i));
+        return result;
+    }
+
+    /**
+     * lex位于值的第一个token，返回时位于值的最后一个token
+     *
+     * @return true表示所有路径都已找到，不需要继续读取
+     */
+    private boolean walk(JSONLex lex, Node node, Matches matches) {
+        if (!node.targets.isEmpty())
+            return collect(Deserializers.forDefault.deserialize(lex), node, matches);
+        switch (lex.getKey()) {
+            case LBB:
+                while (true) {
+                    lex.next();
+                    if (lex.getKey() == Key.RBB)
+                        return false;
+                    if (lex.getKey() == Key.COMMA)
+                        lex.next();
+                    int index = node.matcher == null ? -1 : lex.matchField(node.matcher);
+                    Node child = index >= 0 ? node.fieldNodes[index] : node.anyField;
+                    lex.next();
+                    if (lex.getKey() != Key.COLON)
+                        throw lex.newError();
+                    lex.next();
+                    if (child == null)
+                        JSON.skipValue(lex);
+                    else if (walk(lex, child, matches))
+                        return true;
+                }
+            case LMB:
+                for (int i = 0;; i++) {
+                    lex.next();
+                    if (lex.getKey() == Key.RMB)
+                        return false;
+                    else if (lex.getKey() == Key.COMMA)
+                        lex.next();
+                    Node child = node.index(i);
+                    if (child == null)
+                        JSON.skipValue(lex);
+                    else if (walk(lex, child, matches))
+                        return true;
+                }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 路径在此结束的值已经完整解析，更深的路径在解析结果上继续匹配
+     */
+    private boolean collect(Object value, Node node, Matches matches) {
+        for (int path : node.targets) {
+            if (matches.add(path, value))
+                return true;
+        }
+        if (node.isLeaf())
+            return false;
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                Node child = node.field(e.getKey());
+                if (child != null && collect(e.getValue(), child, matches))
+                    return true;
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                Node child = node.index(i);
+                if (child != null && collect(list.get(i), child, matches))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(paths);
+    }
+}
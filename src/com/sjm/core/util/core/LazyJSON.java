@@ -0,0 +1,402 @@
+package com.sjm.core.util.core;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.sjm.core.util.core.JSON.JSONException;
+import com.sjm.core.util.core.JSON.Key;
+import com.sjm.core.util.core.JSON.StringJSONLex;
+
+/**
+ * 延迟解析的JSON：扫描一遍把每个值的位置记录到int[]中，对象和数组返回Map/List视图，只在访问时解码
+ *
+ * 每个值占两个int：
+ *
+ * 标量： [类型 | 是否有转义 | token长度 << SHIFT] [token开始位置]
+ *
+ * 对象、数组： [类型 | 结束slot << SHIFT] [元素个数]，之后依次是子元素（对象为键、值交替）
+ *
+ * 视图只读，不是线程安全的；对象的键都是String，重复的键只保留最后一个值。
+ */
+@SuppressWarnings("unchecked")
+class LazyJSON {
+    static final int NULL = 0;
+    static final int TRUE = 1;
+    static final int FALSE = 2;
+    static final int NUM = 3;
+    static final int STRING = 4;
+    static final int TEXT = 5;
+    static final int OBJECT = 6;
+    static final int ARRAY = 7;
+    static final int TYPE_MASK = 7;
+    static final int ESCAPED = 8;
+    static final int SHIFT = 4;
+    static final int MAX_LENGTH = -1 >>> SHIFT;
+
+    private static final Object UNRESOLVED = new Object();
+
+    private final String str;
+    private int[] tape;
+    private int size;// slot个数
+
+    private LazyJSON(String str) {
+        this.str = str;
+        this.tape = new int[Math.max(16, str.length() / 4 & ~1)];
+    }
+
+    static Object parse(String str) {
+        LazyJSON json = new LazyJSON(str);
+        StringJSONLex lex = new StringJSONLex();
+        lex.resetAndNext(str);
+        json.readValue(lex);
+        return json.value(0);
+    }
+
+    private int add(int head, int data) {
+        if (size * 2 == tape.length)
+            tape = Arrays.copyOf(tape, tape.length * 2);
+        tape[size * 2] = head;
+        tape[size * 2 + 1] = data;
+        return size++;
+    }
+
+    private void addToken(int type, StringJSONLex lex) {
+        int length = lex.index - lex.begin;
+        if (length > MAX_LENGTH)
+            throw new JSONException("Token too long at " + lex.begin);
+        add(type | length << SHIFT, lex.begin);
+    }
+
+    private void finish(int slot, int type, int count) {
+        if (size > MAX_LENGTH)
+            throw new JSONException("Too many values");
+        tape[slot * 2] = type | size << SHIFT;
+        tape[slot * 2 + 1] = count;
+    }
+
+    private void readValue(StringJSONLex lex) {
+        switch (lex.getKey()) {
+            case LBB:
+                readObject(lex);
+                break;
+            case LMB:
+                readArray(lex);
+                break;
+            case NULL:
+                addToken(NULL, lex);
+                break;
+            case TRUE:
+                addToken(TRUE, lex);
+                break;
+            case FALSE:
+                addToken(FALSE, lex);
+                break;
+            default:
+                readKey(lex);// 其余标量与键的规则相同
+        }
+    }
+
+    /**
+     * 与Deserializers.forString相同，可以作为键的token
+     */
+    private void readKey(StringJSONLex lex) {
+        switch (lex.getKey()) {
+            case NUM:
+                addToken(NUM, lex);
+                break;
+            case LITERAL:
+                addToken(lex.escaped ? STRING | ESCAPED : STRING, lex);
+                break;
+            case TEXT:
+                addToken(TEXT, lex);
+                break;
+            case TRUE:
+                addToken(TRUE, lex);
+                break;
+            case FALSE:
+                addToken(FALSE, lex);
+                break;
+            default:
+                throw lex.newError();
+        }
+    }
+
+    private void readArray(StringJSONLex lex) {
+        int slot = add(ARRAY, 0);
+        int count = 0;
+        while (true) {
+            lex.next();
+            if (lex.getKey() == Key.RMB)
+                break;
+            else if (lex.getKey() == Key.COMMA)
+                lex.next();
+            readValue(lex);
+            count++;
+        }
+        finish(slot, ARRAY, count);
+    }
+
+    private void readObject(StringJSONLex lex) {
+        int slot = add(OBJECT, 0);
+        int count = 0;
+        while (true) {
+            lex.next();
+            if (lex.getKey() == Key.RBB)
+                break;
+            if (lex.getKey() == Key.COMMA)
+                lex.next();
+            readKey(lex);
+            lex.next();
+            if (lex.getKey() != Key.COLON)
+                throw lex.newError();
+            lex.next();
+            readValue(lex);
+            count++;
+        }
+        finish(slot, OBJECT, count);
+    }
+
+    /**
+     * @return 下一个兄弟值的slot
+     */
+    private int skip(int slot) {
+        int head = tape[slot * 2];
+        return (head & TYPE_MASK) >= OBJECT ? head >>> SHIFT : slot + 1;
+    }
+
+    /**
+     * 记录容器中每个子元素的slot
+     */
+    private int[] children(int slot) {
+        int[] slots = new int[tape[slot * 2 + 1]];
+        for (int i = 0, child = slot + 1; i < slots.length; i++, child = skip(child))
+            slots[i] = child;
+        return slots;
+    }
+
+    private Object value(int slot) {
+        int head = tape[slot * 2], begin = tape[slot * 2 + 1];
+        switch (head & TYPE_MASK) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NUM:
+                return Numbers.parseDeclareNumber(str, begin, begin + (head >>> SHIFT));
+            case OBJECT:
+                return new LazyObject(this, slot);
+            case ARRAY:
+                return new LazyArray(this, slot);
+            default:
+                return string(slot);
+        }
+    }
+
+    private String string(int slot) {
+        int head = tape[slot * 2], begin = tape[slot * 2 + 1], end = begin + (head >>> SHIFT);
+        if ((head & TYPE_MASK) != STRING)
+            return str.substring(begin, end);
+        if ((head & ESCAPED) == 0)
+            return str.substring(begin + 1, end - 1);
+        return new MyStringBuilder().appendUnEscape(str, begin + 1, end - 1).toString();
+    }
+
+    /**
+     * 与键解码后的String.hashCode相同
+     */
+    private int keyHash(int slot) {
+        int head = tape[slot * 2], begin = tape[slot * 2 + 1];
+        if ((head & (TYPE_MASK | ESCAPED)) != STRING)
+            return string(slot).hashCode();
+        int h = 0;
+        for (int i = begin + 1, end = begin + (head >>> SHIFT) - 1; i < end; i++)
+            h = 31 * h + str.charAt(i);
+        return h;
+    }
+
+    private boolean keyEquals(int slot1, int slot2) {
+        int head1 = tape[slot1 * 2], head2 = tape[slot2 * 2];
+        if ((head1 & (TYPE_MASK | ESCAPED)) == STRING && (head2 & (TYPE_MASK | ESCAPED)) == STRING)
+            return head1 >>> SHIFT == head2 >>> SHIFT && str.regionMatches(tape[slot1 * 2 + 1] + 1,
+                    str, tape[slot2 * 2 + 1] + 1, (head1 >>> SHIFT) - 2);
+        return string(slot1).equals(string(slot2));
+    }
+
+    /**
+     * 没有转义的字符串键直接与原文比较，不创建String
+     */
+    private boolean keyEquals(int slot, String key) {
+        int head = tape[slot * 2], begin = tape[slot * 2 + 1];
+        if ((head & (TYPE_MASK | ESCAPED)) == STRING)
+            return (head >>> SHIFT) - 2 == key.length()
+                    && str.regionMatches(begin + 1, key, 0, key.length());
+        return string(slot).equals(key);
+    }
+
+    static class LazyObject extends AbstractMap<String, Object> {
+        private final LazyJSON json;
+        private final int slot;
+        private int[] keySlots;// 值的slot是键的slot+1
+        private int[] table;
+        private Object[] values;
+
+        LazyObject(LazyJSON json, int slot) {
+            this.json = json;
+            this.slot = slot;
+        }
+
+        /**
+         * 第一次访问时记录这一层的键，并建立开放定址的散列表；重复的键只保留最后一个值
+         */
+        private int[] keySlots() {
+            if (keySlots == null) {
+                int count = json.tape[slot * 2 + 1];
+                int[] slots = new int[count];
+                int[] table = new int[Integer.highestOneBit(Math.max(count, 1)) * 4];// 下标+1
+                int mask = table.length - 1, n = 0;
+                for (int i = 0, child = slot + 1; i < count; i++, child = json.skip(child + 1)) {
+                    int p = json.keyHash(child) & mask;
+                    for (int j; (j = table[p] - 1) >= 0; p = (p + 1) & mask) {
+                        if (json.keyEquals(slots[j], child)) {
+                            slots[j] = child;
+                            break;
+                        }
+                    }
+                    if (table[p] == 0) {
+                        table[p] = n + 1;
+                        slots[n++] = child;
+                    }
+                }
+                this.table = table;
+                keySlots = n == count ? slots : Arrays.copyOf(slots, n);
+                values = new Object[n];
+                Arrays.fill(values, UNRESOLVED);
+            }
+            return keySlots;
+        }
+
+        private int indexOf(Object key) {
+            if (key instanceof String) {
+                int[] slots = keySlots();
+                int mask = table.length - 1;
+                int p = key.hashCode() & mask;
+                for (int j; (j = table[p] - 1) >= 0; p = (p + 1) & mask) {
+                    if (json.keyEquals(slots[j], (String) key))
+                        return j;
+                }
+            }
+            return -1;
+        }
+
+        private Object valueAt(int index) {
+            Object value = values[index];
+            if (value == UNRESOLVED)
+                values[index] = value = json.value(keySlots[index] + 1);
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return keySlots().length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) != -1;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = indexOf(key);
+            return index == -1 ? null : valueAt(index);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public int size() {
+                    return LazyObject.this.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    int[] slots = keySlots();
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < slots.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (index >= slots.length)
+                                throw new NoSuchElementException();
+                            int i = index++;
+                            return new AbstractMap.SimpleImmutableEntry<>(json.string(slots[i]),
+                                    valueAt(i));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    static class LazyArray extends AbstractList<Object> implements RandomAccess {
+        private final LazyJSON json;
+        private final int slot;
+        private int[] slots;
+        private Object[] values;
+
+        LazyArray(LazyJSON json, int slot) {
+            this.json = json;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object get(int index) {
+            if (slots == null) {
+                slots = json.children(slot);
+                values = new Object[slots.length];
+                Arrays.fill(values, UNRESOLVED);
+            }
+            if (index < 0 || index >= slots.length)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + slots.length);
+            Object value = values[index];
+            if (value == UNRESOLVED)
+                values[index] = value = json.value(slots[index]);
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return json.tape[slot * 2 + 1];
+        }
+    }
+
+    static Map<String, Object> parseObject(String str) {
+        Object value = parse(str);
+        if (!(value instanceof Map))
+            throw new JSONException("Not a JSON object");
+        return (Map<String, Object>) value;
+    }
+
+    static List<Object> parseArray(String str) {
+        Object value = parse(str);
+        if (!(value instanceof List))
+            throw new JSONException("Not a JSON array");
+        return (List<Object>) value;
+    }
+}
@@ -287,19 +287,48 @@ public class MyStringBuilder implements CharSequence, Cloneable {
         return this;
     }
 
+    private static final boolean[] ESCAPE_MAP = new boolean[128];// 需要经过appendEscape(char)的ASCII字符
+    static {
+        for (char c = 0; c < 128; c++)
+            ESCAPE_MAP[c] = !Strings.isPrintable(c) || c == '\\' || c == '\'' || c == '\"';
+    }
+
+    /**
+     * 不需要转义的连续字符整段拷贝
+     */
     public MyStringBuilder appendEscape(CharSequence str, int begin, int end) {
         begin = Strings.checkLeft(begin);
         end = Strings.checkEnd(end, str);
-        for (; begin < end; begin++)
-            appendEscape(str.charAt(begin));
+        int from = begin;
+        for (; begin < end; begin++) {
+            char c = str.charAt(begin);
+            if (c < 128 && ESCAPE_MAP[c]) {
+                if (from < begin)
+                    append(str, from, begin);
+                appendEscape(c);
+                from = begin + 1;
+            }
+        }
+        if (from < end)
+            append(str, from, end);
         return this;
     }
 
     public MyStringBuilder appendEscape(char[] str, int begin, int end) {
         begin = Strings.checkLeft(begin);
         end = Strings.checkEnd(end, str);
-        for (; begin < end; begin++)
-            appendEscape(str[begin]);
+        int from = begin;
+        for (; begin < end; begin++) {
+            char c = str[begin];
+            if (c < 128 && ESCAPE_MAP[c]) {
+                if (from < begin)
+                    append(str, from, begin - from);
+                appendEscape(c);
+                from = begin + 1;
+            }
+        }
+        if (from < end)
+            append(str, from, end - from);
         return this;
     }
 
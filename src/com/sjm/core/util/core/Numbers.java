@@ -430,9 +430,9 @@ public class Numbers {
             String s1;
             String s2;
             if (x1 != 0)
-                s1 = parseIntWithRadix(str, 0, e) + "";
+                s1 = parseIntWithRadix(str, begin, e) + "";
             else
-                s1 = Strings.substring(str, 0, e);
+                s1 = Strings.substring(str, begin, e);
             if (x2 != 0)
                 s2 = parseIntWithRadix(str, e + 1, end) + "";
             else
@@ -518,9 +518,9 @@ public class Numbers {
             String s1;
             String s2;
             if (x1 != 0)
-                s1 = parseIntWithRadix(str, 0, e) + "";
+                s1 = parseIntWithRadix(str, begin, e) + "";
             else
-                s1 = Strings.substring(str, 0, e);
+                s1 = Strings.substring(str, begin, e);
             if (x2 != 0)
                 s2 = parseIntWithRadix(str, e + 1, end) + "";
             else
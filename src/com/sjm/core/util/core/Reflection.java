@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.IntFunction;
@@ -673,9 +674,13 @@ public class Reflection {
                             .toString();
                 }
 
+                /**
+                 * 与JDK的ParameterizedType实现一致，二者可以在同一个Map中作为key
+                 */
                 @Override
                 public int hashCode() {
-                    return rawType.hashCode() ^ Arrays.hashCode(actualTypeArguments);
+                    return Arrays.hashCode(actualTypeArguments) ^ Objects.hashCode(getOwnerType())
+                            ^ rawType.hashCode();
                 }
 
                 @Override
@@ -688,7 +693,8 @@ public class Reflection {
 
                 @Override
                 public Type getOwnerType() {
-                    throw new UnsupportedOperationException();
+                    return rawType instanceof Class ? ((Class<?>) rawType).getDeclaringClass()
+                            : null;
                 }
             };
         }
@@ -0,0 +1,167 @@
+package com.sjm.core.nio.http;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sjm.core.nio.core.ByteBufferPool;
+import com.sjm.core.nio.core.NIOServer;
+import com.sjm.core.util.core.IOUtil;
+
+/**
+ * 对比HttpServer与每连接一个线程的阻塞ServerSocket实现，客户端用保持连接的短JSON请求压测
+ *
+ * 参数： [连接数] [每个服务端的压测秒数] [流水线深度]
+ */
+public class HttpBenchmark {
+    private static final byte[] BODY = "{\"message\":\"hello\"}".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int pipeline = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        HttpServer http = new HttpServer();
+        http.route("GET", "/hello", request -> HttpResponse.ok(BODY, "application/json"));
+        NIOServer nio = http.newServer(18080, Runtime.getRuntime().availableProcessors(),
+                new ByteBufferPool(8192));
+        nio.start();
+        ServerSocket blocking = startBlockingServer(18081);
+        Thread.sleep(500);
+
+        run("warmup", 18080, connections, 3, pipeline);
+        run("nio", 18080, connections, seconds, pipeline);
+        run("warmup", 18081, connections, 3, pipeline);
+        run("blocking", 18081, connections, seconds, pipeline);
+
+        nio.shutdown();
+        blocking.close();
+        System.exit(0);
+    }
+
+    private static void run(String name, int port, int connections, int seconds, int pipeline)
+            throws InterruptedException {
+        LongAdder requests = new LongAdder();
+        long deadline = System.currentTimeMillis() + seconds * 1000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Thread t = new Thread(() -> {
+                try (Socket socket = new Socket("127.0.0.1", port)) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream os = socket.getOutputStream();
+                    InputStream is = new BufferedInputStream(socket.getInputStream());
+                    byte[] request = new byte[0];
+                    byte[] one = "GET /hello HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                            .getBytes(StandardCharsets.ISO_8859_1);
+                    for (int j = 0; j < pipeline; j++)
+                        request = concat(request, one);
+                    while (System.currentTimeMillis() < deadline) {
+                        os.write(request);
+                        for (int j = 0; j < pipeline; j++)
+                            readResponse(is);
+                        requests.add(pipeline);
+                    }
+                } catch (IOException e) {
+                    System.out.println(name + ": " + e);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.printf("%-8s %d connections, pipeline %d: %.0f req/s%n", name, connections,
+                pipeline, requests.sum() / (double) seconds);
+    }
+
+    /**
+     * 每个连接一个线程，读到空行后返回固定响应
+     */
+    private static ServerSocket startBlockingServer(int port) throws IOException {
+        ServerSocket ss = new ServerSocket(port, 1024);
+        byte[] head = ("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+                + BODY.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] response = concat(head, BODY);
+        new Thread(() -> {
+            while (!ss.isClosed()) {
+                Socket socket;
+                try {
+                    socket = ss.accept();
+                } catch (IOException e) {
+                    break;
+                }
+                new Thread(() -> {
+                    try {
+                        InputStream is = new BufferedInputStream(socket.getInputStream());
+                        OutputStream os = socket.getOutputStream();
+                        while (skipHead(is))
+                            os.write(response);
+                    } catch (IOException e) {
+                        // 客户端断开
+                    } finally {
+                        IOUtil.close(socket);
+                    }
+                }).start();
+            }
+        }).start();
+        return ss;
+    }
+
+    /**
+     * 读到空行为止
+     *
+     * @return false表示连接已关闭
+     */
+    private static boolean skipHead(InputStream is) throws IOException {
+        int lineLength = 0;
+        while (true) {
+            int b = is.read();
+            if (b < 0)
+                return false;
+            if (b == '\n') {
+                if (lineLength == 0)
+                    return true;
+                lineLength = 0;
+            } else if (b != '\r') {
+                lineLength++;
+            }
+        }
+    }
+
+    private static void readResponse(InputStream is) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int contentLength = 0;
+        while (true) {
+            int b = is.read();
+            if (b < 0)
+                throw new IOException("Connection closed");
+            if (b == '\n') {
+                if (line.length() == 0)
+                    break;
+                String header = line.toString().toLowerCase();
+                if (header.startsWith("content-length:"))
+                    contentLength = Integer.parseInt(header.substring(15).trim());
+                line.setLength(0);
+            } else if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        for (int i = 0; i < contentLength; i++)
+            if (is.read() < 0)
+                throw new IOException("Connection closed");
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
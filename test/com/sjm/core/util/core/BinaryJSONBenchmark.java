@@ -0,0 +1,94 @@
+package com.sjm.core.util.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.sjm.core.util.core.JSON.Deserializer;
+
+/**
+ * 对比BinaryJSON与文本JSON的编码大小和序列化/解析耗时，数据以数字和byte[]为主
+ *
+ * 参数： [每轮次数] [轮数]，前一半轮数用于预热
+ */
+public class BinaryJSONBenchmark {
+    public static class Sample {
+        public long timestamp;
+        public int sensor;
+        public double value;
+        public float quality;
+        public boolean valid;
+        public String unit;
+        public byte[] raw;
+        public List<Double> history;
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(42);
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Sample s = new Sample();
+            s.timestamp = 1700000000000L + i * 1000;
+            s.sensor = random.nextInt(10000);
+            s.value = random.nextGaussian() * 100;
+            s.quality = random.nextFloat();
+            s.valid = i % 7 != 0;
+            s.unit = "kPa";
+            s.raw = new byte[32];
+            random.nextBytes(s.raw);
+            s.history = new ArrayList<>();
+            for (int j = 0; j < 8; j++)
+                s.history.add(random.nextDouble());
+            samples.add(s);
+        }
+        JSON.Serializer textSerializer = JSON.Serializers.forType(Sample.class);
+        BinaryJSON.BinarySerializer binarySerializer =
+                BinaryJSON.BinarySerializers.forType(Sample.class);
+        Deserializer deserializer = JSON.Deserializers.forType(Sample.class);
+
+        long textSize = 0, binarySize = 0;
+        for (Sample s : samples) {
+            textSize += JSON.toJSONString(s).getBytes(StandardCharsets.UTF_8).length;
+            binarySize += BinaryJSON.toBytes(s, binarySerializer).length;
+        }
+        System.out.printf("size text %d bytes, binary %d bytes (%.0f%%)%n", textSize, binarySize,
+                binarySize * 100.0 / textSize);
+
+        String json = JSON.toJSONString(samples.get(1));
+        byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+        byte[] binary = BinaryJSON.toBytes(samples.get(1), binarySerializer);
+        for (int round = 0; round < rounds; round++) {
+            boolean warmup = round < rounds / 2;
+            MyStringBuilder sb = new MyStringBuilder(512);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                textSerializer.serialize(samples.get(i % samples.size()), sb.clear());
+            report(warmup, "serialize text  ", System.nanoTime() - start, iterations);
+
+            BinaryJSON.Output out = new BinaryJSON.Output(512);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                binarySerializer.serialize(samples.get(i % samples.size()), out.clear());
+            report(warmup, "serialize binary", System.nanoTime() - start, iterations);
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                JSON.parse(utf8, 0, utf8.length, deserializer);
+            report(warmup, "parse text      ", System.nanoTime() - start, iterations);
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                BinaryJSON.parse(binary, 0, binary.length, deserializer);
+            report(warmup, "parse binary    ", System.nanoTime() - start, iterations);
+        }
+    }
+
+    private static void report(boolean warmup, String name, long nanos, int iterations) {
+        if (!warmup)
+            System.out.printf("%s: %.1f ns/op%n", name, nanos / (double) iterations);
+    }
+}
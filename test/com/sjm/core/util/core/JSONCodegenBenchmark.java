@@ -0,0 +1,103 @@
+package com.sjm.core.util.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sjm.core.util.core.JSON.Deserializer;
+import com.sjm.core.util.core.JSON.Serializer;
+
+/**
+ * 对比反射实现与JSONCodegen生成的bean序列化/反序列化的吞吐量
+ *
+ * 参数： [每轮次数] [轮数]，前一半轮数用于预热
+ */
+public class JSONCodegenBenchmark {
+    public static class Item {
+        public int id;
+        public long timestamp;
+        public double price;
+        public boolean active;
+        public String name;
+        private int count;
+        private String tag;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public void setTag(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Item item = new Item();
+            item.id = i;
+            item.timestamp = System.currentTimeMillis() + i;
+            item.price = i * 1.25;
+            item.active = i % 2 == 0;
+            item.name = "item-" + i;
+            item.count = i * 7;
+            item.tag = i % 3 == 0 ? null : "tag" + i;
+            items.add(item);
+        }
+        Serializer reflectSerializer = JSON.Serializers.forBean(Item.class);
+        Deserializer reflectDeserializer = JSON.Deserializers.forBean(Item.class);
+        Serializer codegenSerializer = JSONCodegen.newSerializer(Item.class);
+        Deserializer codegenDeserializer = JSONCodegen.newDeserializer(Item.class);
+        String json = toString(items.get(1), reflectSerializer);
+
+        for (int round = 0; round < rounds; round++) {
+            boolean warmup = round < rounds / 2;
+            report(warmup, "serialize   reflect", serialize(items, reflectSerializer, iterations),
+                    iterations);
+            report(warmup, "serialize   codegen", serialize(items, codegenSerializer, iterations),
+                    iterations);
+            report(warmup, "deserialize reflect",
+                    deserialize(json, reflectDeserializer, iterations), iterations);
+            report(warmup, "deserialize codegen",
+                    deserialize(json, codegenDeserializer, iterations), iterations);
+        }
+    }
+
+    private static String toString(Object value, Serializer serializer) {
+        MyStringBuilder sb = new MyStringBuilder();
+        serializer.serialize(value, sb);
+        return sb.toString();
+    }
+
+    private static long serialize(List<Item> items, Serializer serializer, int iterations) {
+        MyStringBuilder sb = new MyStringBuilder(256);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.serialize(items.get(i % items.size()), sb.clear());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long deserialize(String json, Deserializer deserializer, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JSON.parse(json, deserializer);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(boolean warmup, String name, long nanos, int iterations) {
+        if (!warmup)
+            System.out.printf("%s: %.1f ns/op%n", name, nanos / (double) iterations);
+    }
+}
@@ -0,0 +1,67 @@
+package com.sjm.core.util.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对比JSONPath抽取与完整解析后取值的耗时，模拟只读取$.header.type和$.items[*].id的消息路由
+ *
+ * 参数： [每轮次数] [轮数]，前一半轮数用于预热
+ */
+public class JSONPathBenchmark {
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        MyStringBuilder sb = new MyStringBuilder();
+        sb.append("{\"header\":{\"type\":\"order.created\",\"source\":\"web\"},\"items\":[");
+        for (int i = 0; i < 20; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i)
+                    .append("\",\"price\":").append(i * 0.25)
+                    .append(",\"attrs\":{\"color\":\"red\",\"size\":[1,2,3]}}");
+        }
+        sb.append("],\"audit\":{\"user\":\"u1\",\"trace\":[\"a\",\"b\",\"c\"]}}");
+        String json = sb.toString();
+        JSONPath path = JSONPath.compile("$.header.type", "$.items[*].id");
+        check();
+
+        for (int round = 0; round < rounds; round++) {
+            boolean warmup = round < rounds / 2;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                Map<String, Object> map = JSON.parseObject(json);
+                ((Map<?, ?>) map.get("header")).get("type");
+                List<Object> ids = new ArrayList<>();
+                for (Object item : (List<?>) map.get("items"))
+                    ids.add(((Map<?, ?>) item).get("id"));
+            }
+            long parse = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                path.extract(json);
+            long extract = System.nanoTime() - start;
+            if (!warmup)
+                System.out.printf("parse %.1f us/op, extract %.1f us/op%n",
+                        parse / 1e3 / iterations, extract / 1e3 / iterations);
+        }
+    }
+
+    /**
+     * 通配符与具体路径混合时，每个路径的结果与单独抽取时相同
+     */
+    private static void check() {
+        String json = "{\"x\":{\"k\":1,\"m\":[2,3]},\"y\":{\"k\":4},\"z\":[{\"k\":5}]}";
+        String[] paths = {"$.*.k", "$.*.*", "$.x.k", "$.x.m[*]", "$.z[*].k", "$.z[0].*"};
+        Map<String, List<Object>> all = JSON.extract(json, paths);
+        for (String p : paths) {
+            List<Object> alone = JSON.extract(json, p).get(p);
+            if (!alone.equals(all.get(p)))
+                throw new IllegalStateException(p + ": " + all.get(p) + " != " + alone);
+        }
+        if (!all.get("$.*.*").toString().equals("[1, [2, 3], 4]"))
+            throw new IllegalStateException("$.*.*: " + all.get("$.*.*"));
+    }
+}
@@ -0,0 +1,69 @@
+package com.sjm.core.util.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 字符串为主的JSON（日志行）的序列化与解析吞吐量，覆盖转义、StringJSONLex和ByteJSONLex的字符串扫描
+ *
+ * 参数： [日志行数] [轮数]，前一半轮数用于预热
+ */
+public class JSONStringBenchmark {
+    public static class LogLine {
+        public long timestamp;
+        public String level;
+        public String logger;
+        public String thread;
+        public String message;
+    }
+
+    private static final String[] WORDS = {"request", "completed", "user", "session", "cache",
+            "miss", "latency", "upstream", "timeout", "retrying", "connection", "pool", "order",
+            "payment", "accepted", "GET", "/api/v1/orders", "status=200", "bytes=5120"};
+
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(42);
+        List<LogLine> logs = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            LogLine line = new LogLine();
+            line.timestamp = 1700000000000L + i;
+            line.level = i % 10 == 0 ? "WARN" : "INFO";
+            line.logger = "com.example.service.OrderService";
+            line.thread = "http-nio-8080-exec-" + i % 32;
+            StringBuilder sb = new StringBuilder();
+            int words = 20 + random.nextInt(40);
+            for (int j = 0; j < words; j++)
+                sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            if (i % 50 == 0)
+                sb.append("\"quoted\"\tpath=C:\\tmp");// 少量需要转义的行
+            line.message = sb.toString();
+            logs.add(line);
+        }
+        String json = JSON.toJSONString(logs);
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        double mb = bytes.length / 1024.0 / 1024.0;
+
+        for (int round = 0; round < rounds; round++) {
+            boolean warmup = round < rounds / 2;
+            long start = System.nanoTime();
+            JSON.toJSONString(logs);
+            long serialize = System.nanoTime() - start;
+            start = System.nanoTime();
+            JSON.parseArray(json, LogLine.class);
+            long parseString = System.nanoTime() - start;
+            start = System.nanoTime();
+            JSON.parse(bytes, 0, bytes.length,
+                    JSON.Deserializers.forCollection(ArrayList::new,
+                            JSON.Deserializers.forType(LogLine.class)));
+            long parseBytes = System.nanoTime() - start;
+            if (!warmup)
+                System.out.printf("serialize %.0f MB/s, parse String %.0f MB/s, parse byte[] %.0f MB/s%n",
+                        mb / serialize * 1e9, mb / parseString * 1e9, mb / parseBytes * 1e9);
+        }
+    }
+}
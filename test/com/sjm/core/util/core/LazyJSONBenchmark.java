@@ -0,0 +1,48 @@
+package com.sjm.core.util.core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对比JSON.parse与JSON.parseLazy在只读取少量字段时的耗时
+ *
+ * 参数： [items个数] [轮数]，前一半轮数用于预热
+ */
+public class LazyJSONBenchmark {
+    public static void main(String[] args) {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        MyStringBuilder sb = new MyStringBuilder();
+        sb.append("{\"header\":{\"type\":\"order.created\",\"id\":12345},\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i)
+                    .append("\",\"price\":").append(i * 0.25).append(",\"tags\":[\"a\",\"b\"]}");
+        }
+        sb.append("]}");
+        String json = sb.toString();
+        System.out.printf("document %.1f MB%n", json.length() / 1024.0 / 1024.0);
+
+        for (int round = 0; round < rounds; round++) {
+            boolean warmup = round < rounds / 2;
+            long start = System.nanoTime();
+            Map<?, ?> eager = JSON.parseObject(json);
+            Object type = ((Map<?, ?>) eager.get("header")).get("type");
+            int count = ((List<?>) eager.get("items")).size();
+            long eagerNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Map<String, Object> lazy = JSON.parseLazyObject(json);
+            Object lazyType = ((Map<?, ?>) lazy.get("header")).get("type");
+            int lazyCount = ((List<?>) lazy.get("items")).size();
+            long lazyNanos = System.nanoTime() - start;
+            if (!type.equals(lazyType) || count != lazyCount)
+                throw new IllegalStateException();
+            if (!warmup)
+                System.out.printf("parse %.1f ms, parseLazy %.1f ms%n", eagerNanos / 1e6,
+                        lazyNanos / 1e6);
+        }
+    }
+}